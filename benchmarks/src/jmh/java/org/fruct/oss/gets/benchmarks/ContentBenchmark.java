@@ -0,0 +1,70 @@
+package org.fruct.oss.gets.benchmarks;
+
+import org.fruct.oss.gets.Disability;
+import org.fruct.oss.gets.api.GetsException;
+import org.fruct.oss.gets.api.GetsResponse;
+import org.fruct.oss.gets.parsers.CategoriesContent;
+import org.fruct.oss.gets.utils.XmlParsers;
+import org.kxml2.io.KXmlParser;
+import org.kxml2.io.KXmlSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of categories and disabilities lists
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContentBenchmark {
+	@Param({ "20", "200" })
+	public int categories;
+
+	@Param({ "10" })
+	public int disabilities;
+
+	private String categoriesXml;
+	private String disabilitiesXml;
+
+	@Setup
+	public void setup() {
+		XmlParsers.setFactory(new XmlParsers.Factory() {
+			@Override
+			public XmlPullParser newPullParser() {
+				return new KXmlParser();
+			}
+
+			@Override
+			public XmlSerializer newSerializer() {
+				return new KXmlSerializer();
+			}
+		});
+
+		categoriesXml = GetsXml.categories(categories);
+		disabilitiesXml = GetsXml.disabilities(disabilities, categories, 42);
+	}
+
+	@Benchmark
+	public Object parseCategories() throws GetsException {
+		return GetsResponse.parse(categoriesXml, CategoriesContent.class);
+	}
+
+	@Benchmark
+	public List<Disability> parseDisabilities() throws IOException, XmlPullParserException {
+		return Disability.parse(new StringReader(disabilitiesXml));
+	}
+}
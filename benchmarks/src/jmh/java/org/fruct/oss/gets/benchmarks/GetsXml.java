@@ -0,0 +1,141 @@
+package org.fruct.oss.gets.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generators of synthetic GeTS responses. Output depends only on arguments, so runs are comparable.
+ */
+public class GetsXml {
+	private static final String[][] OBSTACLES = {
+			{ "Stairs", "Лестница", "Portaat" },
+			{ "Curb", "Бордюр", "Reunakivi" },
+			{ "Ramp", "Пандус", "Luiska" },
+			{ "Crossing", "Пешеходный переход", "Suojatie" },
+			{ "Elevator", "Лифт", "Hissi" },
+	};
+
+	// Area around Petrozavodsk
+	private static final double MIN_LAT = 61.70;
+	private static final double MIN_LON = 34.25;
+	private static final double SPAN = 0.2;
+
+	private GetsXml() {
+	}
+
+	/**
+	 * @param placemarks number of points
+	 * @param categories number of categories points are distributed between
+	 * @return loadPoints response with placemarks having multilingual json names
+	 */
+	public static String kml(int placemarks, int categories, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(placemarks * 600);
+
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<response>");
+		appendStatus(sb);
+		sb.append("<content><kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>");
+		sb.append("<name>benchmark.kml</name><open>1</open>");
+
+		for (int i = 0; i < placemarks; i++) {
+			String[] names = OBSTACLES[random.nextInt(OBSTACLES.length)];
+			int category = 1 + random.nextInt(categories);
+
+			sb.append("<Placemark><name>");
+			appendEscaped(sb, "{\"name\":\"" + names[0] + " " + i + "\",\"name_ru\":\"" + names[1] + " " + i
+					+ "\",\"name_fi\":\"" + names[2] + " " + i + "\"}");
+			sb.append("</name><description>");
+			appendEscaped(sb, names[0] + " near building " + random.nextInt(1000) + " & entrance " + random.nextInt(10));
+			sb.append("</description><ExtendedData>");
+			appendData(sb, "uuid", "bench-" + category + "-" + i);
+			appendData(sb, "rating", String.valueOf(1 + random.nextInt(5)));
+			appendData(sb, "access", random.nextInt(10) == 0 ? "rw" : "r");
+			appendData(sb, "time", "2017-04-" + (10 + random.nextInt(20)) + "T12:00:00Z");
+			sb.append("</ExtendedData><Point><coordinates>");
+			sb.append(MIN_LON + random.nextDouble() * SPAN).append(',');
+			sb.append(MIN_LAT + random.nextDouble() * SPAN).append(",0.0");
+			sb.append("</coordinates></Point></Placemark>");
+		}
+
+		sb.append("</Document></kml></content></response>");
+		return sb.toString();
+	}
+
+	/**
+	 * @return getCategories response
+	 */
+	public static String categories(int categories) {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<response>");
+		appendStatus(sb);
+		sb.append("<content><categories>");
+
+		for (int i = 1; i <= categories; i++) {
+			String[] names = OBSTACLES[i % OBSTACLES.length];
+			sb.append("<category><id>").append(i).append("</id><name>");
+			appendEscaped(sb, "{\"name\":\"" + names[0] + "\",\"name_ru\":\"" + names[1]
+					+ "\",\"name_fi\":\"" + names[2] + "\"}");
+			sb.append("</name><description>");
+			appendEscaped(sb, "{\"description\":\"" + names[0] + " obstacles\",\"icon\":\"http://example.com/icons/"
+					+ i + ".png\"}");
+			sb.append("</description><url>");
+			appendEscaped(sb, "{\"url\":\"http://example.com/categories/" + i + "\"}");
+			sb.append("</url><published>true</published></category>");
+		}
+
+		sb.append("</categories></content></response>");
+		return sb.toString();
+	}
+
+	/**
+	 * @return disabilities document where each disability has factors for all categories
+	 */
+	public static String disabilities(int disabilities, int categories, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<disabilities>");
+		for (int i = 0; i < disabilities; i++) {
+			sb.append("<disability><name>Disability ").append(i).append("</name>");
+			for (int c = 1; c <= categories; c++) {
+				sb.append("<category>").append(c).append("</category>");
+			}
+			for (int f = 0; f < categories * 5; f++) {
+				sb.append("<factor>").append(random.nextInt(10)).append("</factor>");
+			}
+			sb.append("</disability>");
+		}
+		sb.append("</disabilities>");
+		return sb.toString();
+	}
+
+	private static void appendStatus(StringBuilder sb) {
+		sb.append("<status><code>0</code><message>success</message></status>");
+	}
+
+	private static void appendData(StringBuilder sb, String name, String value) {
+		sb.append("<Data name=\"").append(name).append("\"><value>");
+		appendEscaped(sb, value);
+		sb.append("</value></Data>");
+	}
+
+	private static void appendEscaped(StringBuilder sb, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			switch (ch) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			default:
+				sb.append(ch);
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package org.fruct.oss.gets.benchmarks;
+
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsSink;
+import org.fruct.oss.gets.api.GetsException;
+import org.fruct.oss.gets.api.GetsResponse;
+import org.fruct.oss.gets.parsers.Kml;
+import org.fruct.oss.gets.utils.LocalizedNames;
+import org.fruct.oss.gets.utils.XmlParsers;
+import org.kxml2.io.KXmlParser;
+import org.kxml2.io.KXmlSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of loadPoints responses, placemarks/sec is ops/sec multiplied by placemarks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KmlBenchmark {
+	@Param({ "1000", "10000", "100000" })
+	public int placemarks;
+
+	@Param({ "20" })
+	public int categories;
+
+	private String xml;
+	private List<Point> points;
+
+	@Setup
+	public void setup() throws GetsException {
+		XmlParsers.setFactory(new XmlParsers.Factory() {
+			@Override
+			public XmlPullParser newPullParser() {
+				return new KXmlParser();
+			}
+
+			@Override
+			public XmlSerializer newSerializer() {
+				return new KXmlSerializer();
+			}
+		});
+
+		xml = GetsXml.kml(placemarks, categories, 42);
+		points = ((Kml) GetsResponse.parse(xml, Kml.class).getContent()).getPoints();
+	}
+
+	/**
+	 * Placemarks collected into list, as {@link GetsResponse#parse(String, Class)} does
+	 */
+	@Benchmark
+	public Object parseKml() throws GetsException {
+		return GetsResponse.parse(xml, Kml.class);
+	}
+
+	/**
+	 * Placemarks streamed into sink, as refresh does
+	 */
+	@Benchmark
+	public Object parsePoints(final Blackhole blackhole) throws IOException, GetsException {
+		return GetsResponse.parsePoints(new StringReader(xml), new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+				blackhole.consume(point);
+			}
+		});
+	}
+
+	/**
+	 * Localization of parsed names, done for each point stored to database
+	 */
+	@Benchmark
+	public void resolveNames(Blackhole blackhole) {
+		for (Point point : points) {
+			blackhole.consume(LocalizedNames.resolve(point.getRawName(), "ru"));
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package org.fruct.oss.gets.benchmarks;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointStatements;
+import org.fruct.oss.gets.api.GetsException;
+import org.fruct.oss.gets.api.GetsResponse;
+import org.fruct.oss.gets.parsers.Kml;
+import org.fruct.oss.gets.utils.XmlParsers;
+import org.kxml2.io.KXmlParser;
+import org.kxml2.io.KXmlSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing batch of points into point table, as PointsDatabase.insertPoints does, through sqlite-jdbc.
+ * Points/sec is placemarks divided by ms/op.
+ *
+ * {@link #updateThenInsert()} is the former path: ContentValues UPDATE by uuid, INSERT when no row
+ * was updated. SQL is built per call and statements come from a cache keyed by SQL, like
+ * SQLiteDatabase.update and insert do. {@link #compiledUpdateThenInsert()} runs statements of
+ * {@link PointStatements} compiled once per batch, as PointsDatabase.insertPoints does, and
+ * {@link #compiledReplace()} binds each point into one compiled INSERT OR REPLACE.
+ * All write whole batch in one transaction.
+ *
+ * Schema is a copy of point table of PointsDatabase version 18, statements are not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UpsertBenchmark {
+	private static final String[] SCHEMA = {
+			"CREATE TABLE point (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, description TEXT, url TEXT, "
+					+ "lat INTEGER, lon INTEGER, categoryId INTEGER, provider TEXT, uuid TEXT, difficulty INTEGER, "
+					+ "private INTEGER DEFAULT 0, tile INTEGER, hash INTEGER, localName TEXT, visible INTEGER, "
+					+ "rating INTEGER);",
+			"CREATE UNIQUE INDEX point_uuid_index ON point (uuid);",
+			"CREATE INDEX point_tile_index ON point (tile, lat, lon);"
+	};
+
+	// Replaced variant: deletes and reinserts existing row keeping its _id
+	private static final String REPLACE_POINT = "INSERT OR REPLACE INTO point " +
+			"(_id, name, description, url, lat, lon, tile, categoryId, provider, uuid, difficulty, private, hash, localName, visible, rating) " +
+			"VALUES ((SELECT _id FROM point WHERE uuid=?), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+	private static final int CATEGORIES = 20;
+
+	// Points cell of SpatialGrid
+	private static final int POINT_CELL_E6 = 10000;
+
+	@Param({ "10000", "100000" })
+	public int placemarks;
+
+	// Batch replaces points already stored, as repeated refresh does
+	@Param({ "false", "true" })
+	public boolean isStored;
+
+	private List<Point> points;
+	private File file;
+	private Connection connection;
+
+	private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+
+	@Setup
+	public void setup() throws GetsException {
+		XmlParsers.setFactory(new XmlParsers.Factory() {
+			@Override
+			public XmlPullParser newPullParser() {
+				return new KXmlParser();
+			}
+
+			@Override
+			public XmlSerializer newSerializer() {
+				return new KXmlSerializer();
+			}
+		});
+
+		points = ((Kml) GetsResponse.parse(GetsXml.kml(placemarks, CATEGORIES, 42), Kml.class).getContent()).getPoints();
+
+		// Provider sets category of points from request
+		for (int i = 0; i < points.size(); i++) {
+			points.get(i).setCategory(new Category("category", "", "", "", i % CATEGORIES, true));
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void openDatabase() throws IOException, SQLException {
+		file = File.createTempFile("points", ".db");
+		file.delete();
+		connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+
+		Statement statement = connection.createStatement();
+		for (String sql : SCHEMA) {
+			statement.execute(sql);
+		}
+		statement.close();
+
+		if (isStored) {
+			compiledUpdateThenInsert();
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeDatabase() throws SQLException {
+		for (PreparedStatement statement : statementCache.values()) {
+			statement.close();
+		}
+		statementCache.clear();
+		connection.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public int updateThenInsert() throws SQLException {
+		int written = 0;
+		connection.setAutoCommit(false);
+		try {
+			for (Point point : points) {
+				Map<String, Object> cv = new LinkedHashMap<>(8);
+				cv.put("name", point.getName());
+				cv.put("description", point.getDescription());
+				cv.put("url", point.getUrl());
+				cv.put("lat", point.getLatE6());
+				cv.put("lon", point.getLonE6());
+				cv.put("tile", tileOf(point));
+				cv.put("categoryId", point.getCategory().getId());
+				cv.put("provider", point.getProvider());
+				cv.put("difficulty", point.getDifficulty());
+				cv.put("private", point.isPrivate());
+
+				int affected = update(cv, point.getUuid());
+				if (affected == 0) {
+					cv.put("uuid", point.getUuid());
+					insert(cv);
+				}
+				written++;
+			}
+			connection.commit();
+		} finally {
+			connection.setAutoCommit(true);
+		}
+		return written;
+	}
+
+	@Benchmark
+	public int compiledUpdateThenInsert() throws SQLException {
+		int written = 0;
+		connection.setAutoCommit(false);
+		PreparedStatement update = connection.prepareStatement(PointStatements.UPDATE_POINT);
+		PreparedStatement insert = connection.prepareStatement(PointStatements.INSERT_POINT);
+		try {
+			for (Point point : points) {
+				bindPoint(update, point);
+				if (update.executeUpdate() == 0) {
+					bindPoint(insert, point);
+					insert.executeUpdate();
+				}
+				written++;
+			}
+			connection.commit();
+		} finally {
+			update.close();
+			insert.close();
+			connection.setAutoCommit(true);
+		}
+		return written;
+	}
+
+	@Benchmark
+	public int compiledReplace() throws SQLException {
+		int written = 0;
+		connection.setAutoCommit(false);
+		PreparedStatement upsert = connection.prepareStatement(REPLACE_POINT);
+		try {
+			for (Point point : points) {
+				upsert.setString(1, point.getUuid());
+				upsert.setString(2, point.getName());
+				upsert.setString(3, point.getDescription());
+				upsert.setString(4, point.getUrl());
+				upsert.setInt(5, point.getLatE6());
+				upsert.setInt(6, point.getLonE6());
+				upsert.setInt(7, tileOf(point));
+				upsert.setInt(8, point.getCategory().getId());
+				upsert.setString(9, point.getProvider());
+				upsert.setString(10, point.getUuid());
+				upsert.setInt(11, point.getDifficulty());
+				upsert.setInt(12, point.isPrivate() ? 1 : 0);
+				upsert.setLong(13, point.hashCode());
+				upsert.setString(14, point.getName());
+				upsert.setInt(15, 1);
+				upsert.setInt(16, point.getDifficulty());
+				upsert.executeUpdate();
+				written++;
+			}
+			connection.commit();
+		} finally {
+			upsert.close();
+			connection.setAutoCommit(true);
+		}
+		return written;
+	}
+
+	private static void bindPoint(PreparedStatement statement, Point point) throws SQLException {
+		statement.setString(1, point.getName());
+		statement.setString(2, point.getDescription());
+		statement.setString(3, point.getUrl());
+		statement.setInt(4, point.getLatE6());
+		statement.setInt(5, point.getLonE6());
+		statement.setInt(6, tileOf(point));
+		statement.setInt(7, point.getCategory().getId());
+		statement.setString(8, point.getProvider());
+		statement.setInt(9, point.getDifficulty());
+		statement.setInt(10, point.isPrivate() ? 1 : 0);
+		statement.setLong(11, point.hashCode());
+		statement.setString(12, point.getName());
+		statement.setInt(13, 1);
+		statement.setInt(14, point.getDifficulty());
+		statement.setString(PointStatements.UUID_INDEX, point.getUuid());
+	}
+
+	private int update(Map<String, Object> cv, String uuid) throws SQLException {
+		StringBuilder sql = new StringBuilder("UPDATE point SET ");
+		int i = 0;
+		for (String column : cv.keySet()) {
+			sql.append(i++ > 0 ? "," : "").append(column).append("=?");
+		}
+		sql.append(" WHERE uuid=?");
+
+		PreparedStatement statement = cachedStatement(sql.toString());
+		i = 1;
+		for (Object value : cv.values()) {
+			statement.setObject(i++, value);
+		}
+		statement.setString(i, uuid);
+		return statement.executeUpdate();
+	}
+
+	private void insert(Map<String, Object> cv) throws SQLException {
+		StringBuilder sql = new StringBuilder("INSERT INTO point(");
+		StringBuilder values = new StringBuilder(") VALUES (");
+		int i = 0;
+		for (String column : cv.keySet()) {
+			sql.append(i > 0 ? "," : "").append(column);
+			values.append(i++ > 0 ? ",?" : "?");
+		}
+		sql.append(values).append(")");
+
+		PreparedStatement statement = cachedStatement(sql.toString());
+		i = 1;
+		for (Object value : cv.values()) {
+			statement.setObject(i++, value);
+		}
+		statement.executeUpdate();
+	}
+
+	private PreparedStatement cachedStatement(String sql) throws SQLException {
+		PreparedStatement statement = statementCache.get(sql);
+		if (statement == null) {
+			statement = connection.prepareStatement(sql);
+			statementCache.put(sql, statement);
+		}
+		return statement;
+	}
+
+	private static int tileOf(Point point) {
+		return (point.getLatE6() / POINT_CELL_E6) * 36000 + point.getLonE6() / POINT_CELL_E6;
+	}
+}
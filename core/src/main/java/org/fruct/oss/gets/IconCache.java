@@ -0,0 +1,25 @@
+package org.fruct.oss.gets;
+
+import android.graphics.Bitmap;
+
+/**
+ * Category icons are not decoded on JVM: gets-core replaces Android icon cache of the library
+ * with this one, which never has icons.
+ */
+public class IconCache {
+	private static final IconCache instance = new IconCache();
+
+	public static IconCache getInstance() {
+		return instance;
+	}
+
+	private IconCache() {
+	}
+
+	/**
+	 * @return always null
+	 */
+	public Bitmap get(String url) {
+		return null;
+	}
+}
@@ -0,0 +1,54 @@
+package org.fruct.oss.gets.ingest;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Point;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes points as csv rows: region, category id, uuid, lat, lon, rating, name.
+ * Chunks from different workers are written whole under lock.
+ */
+public class CsvSink implements IngestionSink {
+	private final Writer writer;
+
+	public CsvSink(Writer writer) throws IOException {
+		this.writer = writer;
+		writer.write("region,category,uuid,lat,lon,rating,name\n");
+	}
+
+	@Override
+	public void write(Region region, Category category, List<Point> points) throws IOException {
+		StringBuilder sb = new StringBuilder(points.size() * 128);
+		for (Point point : points) {
+			appendQuoted(sb, region.getName()).append(',');
+			sb.append(category.getId()).append(',');
+			appendQuoted(sb, point.getUuid()).append(',');
+			sb.append(point.getLat()).append(',');
+			sb.append(point.getLon()).append(',');
+			sb.append(point.getDifficulty()).append(',');
+			appendQuoted(sb, point.getRawName()).append('\n');
+		}
+
+		synchronized (writer) {
+			writer.write(sb.toString());
+		}
+	}
+
+	@Override
+	public void finish(Region region, Category category, int count) throws IOException {
+		synchronized (writer) {
+			writer.flush();
+		}
+	}
+
+	private static StringBuilder appendQuoted(StringBuilder sb, String value) {
+		sb.append('"');
+		if (value != null) {
+			sb.append(value.replace("\"", "\"\""));
+		}
+		return sb.append('"');
+	}
+}
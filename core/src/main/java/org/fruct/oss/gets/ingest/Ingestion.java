@@ -0,0 +1,226 @@
+package org.fruct.oss.gets.ingest;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsException;
+import org.fruct.oss.gets.PointsProvider;
+import org.fruct.oss.gets.PointsSink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Loads points of many regions and categories into sink in parallel.
+ *
+ * Each pair of region and category is separate task on fixed pool of worker threads. Points are
+ * streamed from provider to sink in chunks, so memory use is bounded by threads and chunk size
+ * regardless of response sizes. Failed task doesn't stop other ones, failures are listed in {@link Report}.
+ */
+public class Ingestion {
+	private static final Logger log = Logger.getLogger("Ingestion");
+
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	private final PointsProvider provider;
+	private final IngestionSink sink;
+	private final int threads;
+	private final int chunkSize;
+
+	/**
+	 * Ingestion with two workers per core, as tasks spend part of time waiting for network
+	 */
+	public Ingestion(PointsProvider provider, IngestionSink sink) {
+		this(provider, sink, Runtime.getRuntime().availableProcessors() * 2, DEFAULT_CHUNK_SIZE);
+	}
+
+	public Ingestion(PointsProvider provider, IngestionSink sink, int threads, int chunkSize) {
+		if (threads < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("Threads and chunk size must be positive");
+		}
+
+		this.provider = provider;
+		this.sink = sink;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Load points of regions, blocks until all tasks finish
+	 *
+	 * @param categoryIds categories to load, null for all categories
+	 * @throws PointsException if categories can't be loaded
+	 */
+	public Report run(List<Region> regions, int[] categoryIds) throws PointsException, InterruptedException {
+		long startTime = System.nanoTime();
+
+		List<Category> categories = provider.loadCategories();
+		if (categoryIds != null) {
+			TIntSet selected = new TIntHashSet(categoryIds);
+			List<Category> filtered = new ArrayList<>();
+			for (Category category : categories) {
+				if (selected.contains(category.getId())) {
+					filtered.add(category);
+				}
+			}
+			categories = filtered;
+		}
+
+		List<Task> tasks = new ArrayList<>(regions.size() * categories.size());
+		for (Region region : regions) {
+			for (Category category : categories) {
+				tasks.add(new Task(region, category));
+			}
+		}
+
+		log.info("Ingesting " + regions.size() + " regions, " + categories.size() + " categories by "
+				+ threads + " threads");
+
+		Report report = new Report(tasks.size());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(tasks.size(), 1)));
+		try {
+			List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+			for (Task task : tasks) {
+				futures.add(executor.submit(task));
+			}
+
+			for (int i = 0; i < tasks.size(); i++) {
+				Task task = tasks.get(i);
+				try {
+					report.points += futures.get(i).get();
+				} catch (ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					log.warning("Can't ingest " + task.region + " category " + task.category.getId() + ": " + cause);
+					report.failures.add(new Failure(task.region, task.category, cause));
+				}
+			}
+		} finally {
+			// Interrupts remaining tasks if waiting was interrupted
+			executor.shutdownNow();
+		}
+
+		report.elapsed = (System.nanoTime() - startTime) / 1000000;
+		log.info("Ingested " + report.points + " points in " + report.elapsed + " ms, "
+				+ report.failures.size() + " tasks failed");
+		return report;
+	}
+
+	private class Task implements Callable<Integer> {
+		private final Region region;
+		private final Category category;
+
+		private Task(Region region, Category category) {
+			this.region = region;
+			this.category = category;
+		}
+
+		@Override
+		public Integer call() throws PointsException, IOException {
+			ChunkSink chunkSink = new ChunkSink(region, category);
+			provider.loadPoints(category, region.getCenter(), region.getRadius(), null, chunkSink);
+			chunkSink.flush();
+
+			sink.finish(region, category, chunkSink.count);
+			return chunkSink.count;
+		}
+	}
+
+	private class ChunkSink implements PointsSink {
+		private final Region region;
+		private final Category category;
+
+		private List<Point> chunk = new ArrayList<>(chunkSize);
+		private int count;
+
+		private ChunkSink(Region region, Category category) {
+			this.region = region;
+			this.category = category;
+		}
+
+		@Override
+		public void addPoint(Point point) throws IOException {
+			chunk.add(point);
+			count++;
+
+			if (chunk.size() >= chunkSize) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException("Ingestion cancelled");
+			}
+
+			if (!chunk.isEmpty()) {
+				sink.write(region, category, chunk);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+	}
+
+	public static class Report {
+		private final int tasks;
+		private final List<Failure> failures = new ArrayList<>();
+		private int points;
+		private long elapsed;
+
+		private Report(int tasks) {
+			this.tasks = tasks;
+		}
+
+		public int getTasks() {
+			return tasks;
+		}
+
+		public List<Failure> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+
+		public int getPoints() {
+			return points;
+		}
+
+		/**
+		 * @return wall time in milliseconds
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+	}
+
+	public static class Failure {
+		private final Region region;
+		private final Category category;
+		private final Throwable error;
+
+		private Failure(Region region, Category category, Throwable error) {
+			this.region = region;
+			this.category = category;
+			this.error = error;
+		}
+
+		public Region getRegion() {
+			return region;
+		}
+
+		public Category getCategory() {
+			return category;
+		}
+
+		public Throwable getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.fruct.oss.gets.ingest;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Point;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receiver of ingested points.
+ *
+ * Methods are called concurrently from worker threads, but all calls for one region and category
+ * come from single thread in order. Regions may overlap, so same point can be written several times.
+ */
+public interface IngestionSink {
+	void write(Region region, Category category, List<Point> points) throws IOException;
+
+	/**
+	 * Called after all points of region and category were written
+	 *
+	 * @param count total number of written points
+	 */
+	void finish(Region region, Category category, int count) throws IOException;
+}
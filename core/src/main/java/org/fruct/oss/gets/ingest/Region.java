@@ -0,0 +1,48 @@
+package org.fruct.oss.gets.ingest;
+
+import org.osmdroid.util.GeoPoint;
+
+/**
+ * Circular area which points are requested for
+ */
+public class Region {
+	private final String name;
+	private final double lat;
+	private final double lon;
+	private final int radius;
+
+	/**
+	 * @param radius radius in meters
+	 */
+	public Region(String name, double lat, double lon, int radius) {
+		this.name = name;
+		this.lat = lat;
+		this.lon = lon;
+		this.radius = radius;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getLat() {
+		return lat;
+	}
+
+	public double getLon() {
+		return lon;
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	public GeoPoint getCenter() {
+		return new GeoPoint(lat, lon);
+	}
+
+	@Override
+	public String toString() {
+		return "Region{" + name + " " + lat + "," + lon + " r=" + radius + "}";
+	}
+}
@@ -0,0 +1,32 @@
+package org.fruct.oss.gets.utils;
+
+import java.util.logging.Logger;
+
+/**
+ * Logging of code shared with Android library, written to java.util.logging logger named by tag.
+ * Replaces logcat implementation of the library: verbose maps to FINER, debug to FINE.
+ */
+public final class Log {
+	private Log() {
+	}
+
+	public static void v(String tag, String msg) {
+		Logger.getLogger(tag).finer(msg);
+	}
+
+	public static void d(String tag, String msg) {
+		Logger.getLogger(tag).fine(msg);
+	}
+
+	public static void i(String tag, String msg) {
+		Logger.getLogger(tag).info(msg);
+	}
+
+	public static void w(String tag, String msg) {
+		Logger.getLogger(tag).warning(msg);
+	}
+
+	public static void e(String tag, String msg) {
+		Logger.getLogger(tag).severe(msg);
+	}
+}
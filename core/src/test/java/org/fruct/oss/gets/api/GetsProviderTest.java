@@ -0,0 +1,228 @@
+package org.fruct.oss.gets.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsException;
+import org.fruct.oss.gets.PointsProvider;
+import org.fruct.oss.gets.ValidatedPointsSink;
+import org.fruct.oss.gets.utils.HttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Conditional points download against stub GeTS server serving versioned KML
+ */
+public class GetsProviderTest {
+	private static final String LAST_MODIFIED_V1 = "Mon, 01 Jan 2001 00:00:00 GMT";
+	private static final String LAST_MODIFIED_V2 = "Tue, 02 Jan 2001 00:00:00 GMT";
+
+	private static final GeoPoint CENTER = new GeoPoint(61.78, 34.35);
+
+	private HttpServer server;
+	private GetsProvider provider;
+	private Category category;
+
+	// Written by test thread before request, read by server thread
+	private volatile int version = 1;
+	private volatile boolean isEtagSent = true;
+	private volatile boolean isLastModifiedSent;
+
+	// Conditional headers of last request
+	private volatile String ifNoneMatch;
+	private volatile String ifModifiedSince;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/service/loadPoints.php", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleLoadPoints(exchange);
+			}
+		});
+		server.start();
+
+		GetsProvider.GETS_SERVER = "http://localhost:" + server.getAddress().getPort() + "/service";
+		provider = new GetsProvider(null, null, new HttpTransport(null));
+		category = new Category("category", "", "", "", 1, true);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		GetsProvider.GETS_SERVER = null;
+	}
+
+	@Test
+	public void firstRequestDownloadsAllPoints() throws PointsException {
+		Result result = load(1000, null);
+
+		assertEquals(3, result.count);
+		assertEquals("one", result.names.get("a"));
+		assertEquals("two", result.names.get("b"));
+		assertEquals("three", result.names.get("c"));
+		assertNotNull(result.validator);
+		assertNull(ifNoneMatch);
+	}
+
+	@Test
+	public void unchangedPointsAreNotModified() throws PointsException {
+		Result first = load(1000, null);
+		Result second = load(1000, first.validator);
+
+		assertEquals(PointsProvider.NOT_MODIFIED, second.count);
+		assertEquals(0, second.names.size());
+		assertNull(second.validator);
+		assertEquals("\"v1\"", ifNoneMatch);
+	}
+
+	@Test
+	public void changedPointsAreDownloadedAgain() throws PointsException {
+		Result first = load(1000, null);
+		version = 2;
+		Result second = load(1000, first.validator);
+
+		assertEquals(3, second.count);
+		assertEquals("one", second.names.get("a"));
+		assertEquals("two changed", second.names.get("b"));
+		assertEquals("four", second.names.get("d"));
+		assertNotEquals(first.validator, second.validator);
+
+		Result third = load(1000, second.validator);
+		assertEquals(PointsProvider.NOT_MODIFIED, third.count);
+	}
+
+	@Test
+	public void validatorIsNotSentForOtherArea() throws PointsException {
+		Result first = load(1000, null);
+		Result second = load(2000, first.validator);
+
+		assertEquals(3, second.count);
+		assertNull(ifNoneMatch);
+		assertNull(ifModifiedSince);
+	}
+
+	@Test
+	public void serverLastModifiedIsSentBack() throws PointsException {
+		isEtagSent = false;
+		isLastModifiedSent = true;
+
+		Result first = load(1000, null);
+		assertNotNull(first.validator);
+
+		Result second = load(1000, first.validator);
+		assertEquals(LAST_MODIFIED_V1, ifModifiedSince);
+		assertEquals(PointsProvider.NOT_MODIFIED, second.count);
+
+		version = 2;
+		Result third = load(1000, first.validator);
+		assertEquals(3, third.count);
+	}
+
+	@Test
+	public void serverWithoutValidatorsAlwaysDownloads() throws PointsException {
+		isEtagSent = false;
+
+		Result first = load(1000, null);
+		assertNull(first.validator);
+
+		Result second = load(1000, first.validator);
+		assertEquals(3, second.count);
+		assertNull(ifNoneMatch);
+		assertNull(ifModifiedSince);
+	}
+
+	private Result load(int radius, String validator) throws PointsException {
+		Result result = new Result();
+		result.count = provider.loadPoints(category, CENTER, radius, validator, result);
+		return result;
+	}
+
+	private void handleLoadPoints(HttpExchange exchange) throws IOException {
+		InputStream input = exchange.getRequestBody();
+		while (input.read() >= 0) {
+			// Request body is not checked
+		}
+
+		ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+
+		String etag = "\"v" + version + "\"";
+		String lastModified = version == 1 ? LAST_MODIFIED_V1 : LAST_MODIFIED_V2;
+
+		if (isEtagSent) {
+			exchange.getResponseHeaders().set("ETag", etag);
+		}
+		if (isLastModifiedSent) {
+			exchange.getResponseHeaders().set("Last-Modified", lastModified);
+		}
+
+		if ((isEtagSent && etag.equals(ifNoneMatch))
+				|| (isLastModifiedSent && lastModified.equals(ifModifiedSince))) {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] body = (version == 1
+				? kml(placemark("a", "one"), placemark("b", "two"), placemark("c", "three"))
+				: kml(placemark("a", "one"), placemark("b", "two changed"), placemark("d", "four")))
+				.getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.close();
+	}
+
+	private static String kml(String... placemarks) {
+		StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><response>"
+				+ "<status><code>0</code><message>success</message></status><content>"
+				+ "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>points</name>");
+		for (String placemark : placemarks) {
+			builder.append(placemark);
+		}
+		return builder.append("</Document></kml></content></response>").toString();
+	}
+
+	private static String placemark(String uuid, String name) {
+		return "<Placemark><name>" + name + "</name><description>description</description>"
+				+ "<ExtendedData><Data name=\"uuid\"><value>" + uuid + "</value></Data></ExtendedData>"
+				+ "<Point><coordinates>34.35,61.78,0.0</coordinates></Point></Placemark>";
+	}
+
+	private static class Result implements ValidatedPointsSink {
+		private final Map<String, String> names = new HashMap<>();
+		private int count;
+		private String validator;
+
+		@Override
+		public void addPoint(Point point) {
+			names.put(point.getUuid(), point.getName());
+		}
+
+		@Override
+		public void onResponseValidator(String validator) {
+			this.validator = validator;
+		}
+	}
+}
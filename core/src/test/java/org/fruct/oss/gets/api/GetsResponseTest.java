@@ -0,0 +1,137 @@
+package org.fruct.oss.gets.api;
+
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsSink;
+import org.fruct.oss.gets.parsers.Kml;
+import org.junit.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GetsResponseTest {
+	private static final int PLACEMARKS = 2000;
+
+	@Test
+	public void pointsAreStreamedBeforeResponseIsRead() throws IOException, GetsException {
+		String xml = kml(PLACEMARKS);
+		final CountingReader reader = new CountingReader(new StringReader(xml));
+		final List<Point> points = new ArrayList<>();
+		final long[] readAtFirstPoint = new long[1];
+
+		GetsResponse response = GetsResponse.parsePoints(reader, new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+				if (points.isEmpty()) {
+					readAtFirstPoint[0] = reader.count;
+				}
+				points.add(point);
+			}
+		});
+
+		assertEquals(0, response.getCode());
+		assertTrue(response.getContent() instanceof Kml);
+		assertEquals(PLACEMARKS, points.size());
+		assertTrue(readAtFirstPoint[0] < xml.length() / 2);
+	}
+
+	@Test
+	public void placemarkFieldsAreParsed() throws IOException, GetsException {
+		final List<Point> points = new ArrayList<>();
+		GetsResponse.parsePoints(new StringReader(kml(2)), new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+				points.add(point);
+			}
+		});
+
+		Point point = points.get(1);
+		assertEquals("uuid-1", point.getUuid());
+		assertEquals("{\"name\": \"Stairs 1\", \"name_ru\": \"Лестница 1\"}", point.getRawName());
+		assertEquals("description 1", point.getDescription());
+		assertEquals(61001000, point.getLatE6());
+		assertEquals(34002000, point.getLonE6());
+		assertEquals(2, point.getDifficulty());
+		assertTrue(point.isPrivate());
+	}
+
+	@Test
+	public void sinkFailureStopsParsing() throws GetsException {
+		final int[] count = new int[1];
+		try {
+			GetsResponse.parsePoints(new StringReader(kml(PLACEMARKS)), new PointsSink() {
+				@Override
+				public void addPoint(Point point) throws IOException {
+					if (++count[0] == 10) {
+						throw new InterruptedIOException("cancelled");
+					}
+				}
+			});
+			fail();
+		} catch (IOException ex) {
+			assertEquals(10, count[0]);
+		}
+	}
+
+	@Test(expected = GetsException.class)
+	public void malformedResponseIsRejected() throws IOException, GetsException {
+		GetsResponse.parsePoints(new StringReader("<response><status><code>0</code>"), new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+			}
+		});
+	}
+
+	private static String kml(int placemarks) {
+		StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><response>"
+				+ "<status><code>0</code><message>success</message></status><content>"
+				+ "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>points</name><open>1</open>");
+		for (int i = 0; i < placemarks; i++) {
+			builder.append("<Placemark><name>{\"name\": \"Stairs ").append(i)
+					.append("\", \"name_ru\": \"Лестница ").append(i).append("\"}</name>")
+					.append("<description>description ").append(i).append("</description>")
+					.append("<ExtendedData>")
+					.append("<Data name=\"uuid\"><value>uuid-").append(i).append("</value></Data>")
+					.append("<Data name=\"rating\"><value>").append(i % 5 + 1).append("</value></Data>")
+					.append("<Data name=\"access\"><value>").append(i % 2 == 0 ? "r" : "rw").append("</value></Data>")
+					.append("</ExtendedData>")
+					.append("<Point><coordinates>").append(34 + i * 0.002).append(",").append(61 + i * 0.001)
+					.append(",0.0</coordinates></Point></Placemark>");
+		}
+		return builder.append("</Document></kml></content></response>").toString();
+	}
+
+	private static class CountingReader extends FilterReader {
+		private volatile long count;
+
+		CountingReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = super.read();
+			if (c >= 0) {
+				count++;
+			}
+			return c;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+	}
+}
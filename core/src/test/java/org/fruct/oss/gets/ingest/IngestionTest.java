@@ -0,0 +1,151 @@
+package org.fruct.oss.gets.ingest;
+
+import org.fruct.oss.gets.Category;
+import org.fruct.oss.gets.Disability;
+import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsException;
+import org.fruct.oss.gets.PointsProvider;
+import org.fruct.oss.gets.PointsSink;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionTest {
+	private static final List<Region> REGIONS = Arrays.asList(
+			new Region("a", 61.78, 34.35, 1000),
+			new Region("b", 59.93, 30.31, 2000));
+
+	@Test
+	public void allRegionsAndCategoriesAreWrittenInChunks() throws Exception {
+		RecordingSink sink = new RecordingSink();
+		Ingestion.Report report = new Ingestion(new FakeProvider(25, -1), sink, 3, 10).run(REGIONS, null);
+
+		assertEquals(6, report.getTasks());
+		assertEquals(6 * 25, report.getPoints());
+		assertTrue(report.getFailures().isEmpty());
+
+		assertEquals(6, sink.finished.size());
+		for (Map.Entry<String, Integer> entry : sink.finished.entrySet()) {
+			assertEquals(entry.getKey(), 25, (int) entry.getValue());
+			assertEquals(entry.getKey(), Arrays.asList(10, 10, 5), sink.chunks.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void categoriesAreFiltered() throws Exception {
+		RecordingSink sink = new RecordingSink();
+		Ingestion.Report report = new Ingestion(new FakeProvider(5, -1), sink, 2, 10)
+				.run(REGIONS, new int[] { 2 });
+
+		assertEquals(2, report.getTasks());
+		assertTrue(sink.finished.containsKey("a/2"));
+		assertTrue(sink.finished.containsKey("b/2"));
+	}
+
+	@Test
+	public void failedTaskDoesNotStopOthers() throws Exception {
+		RecordingSink sink = new RecordingSink();
+		Ingestion.Report report = new Ingestion(new FakeProvider(5, 3), sink, 2, 10).run(REGIONS, null);
+
+		assertEquals(2, report.getFailures().size());
+		for (Ingestion.Failure failure : report.getFailures()) {
+			assertEquals(3, failure.getCategory().getId());
+			assertTrue(failure.getError() instanceof PointsException);
+			assertTrue(!sink.finished.containsKey(failure.getRegion().getName() + "/3"));
+		}
+		assertEquals(4 * 5, report.getPoints());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroThreadsAreRejected() {
+		new Ingestion(new FakeProvider(0, -1), new RecordingSink(), 0, 10);
+	}
+
+	private static class FakeProvider implements PointsProvider {
+		private final int points;
+		private final int failingCategoryId;
+
+		FakeProvider(int points, int failingCategoryId) {
+			this.points = points;
+			this.failingCategoryId = failingCategoryId;
+		}
+
+		@Override
+		public String getProviderName() {
+			return "fake";
+		}
+
+		@Override
+		public List<Disability> loadDisabilities() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public List<Category> loadCategories() {
+			List<Category> categories = new ArrayList<>();
+			for (int id = 1; id <= 3; id++) {
+				categories.add(new Category("category " + id, "", "", "", id, true));
+			}
+			return categories;
+		}
+
+		@Override
+		public List<Point> loadPoints(Category category, GeoPoint geoPoint) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int loadPoints(Category category, GeoPoint geoPoint, int radius, String validator, PointsSink sink)
+				throws PointsException {
+			if (category.getId() == failingCategoryId) {
+				throw new PointsException("Category " + category.getId() + " failed");
+			}
+
+			try {
+				for (int i = 0; i < points; i++) {
+					sink.addPoint(new Point("point " + i, "", "", geoPoint.getLatitude(), geoPoint.getLongitude(),
+							category, "fake", category.getId() + "-" + i, 1));
+				}
+			} catch (IOException ex) {
+				throw new PointsException("Sink failed", ex);
+			}
+			return points;
+		}
+
+		@Override
+		public String uploadPoint(Point point) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class RecordingSink implements IngestionSink {
+		private final Map<String, List<Integer>> chunks = new ConcurrentHashMap<>();
+		private final Map<String, Integer> finished = new ConcurrentHashMap<>();
+
+		@Override
+		public void write(Region region, Category category, List<Point> points) {
+			String key = region.getName() + "/" + category.getId();
+			if (!chunks.containsKey(key)) {
+				chunks.put(key, new ArrayList<Integer>());
+			}
+
+			// Calls for one region and category come from single thread
+			chunks.get(key).add(points.size());
+		}
+
+		@Override
+		public void finish(Region region, Category category, int count) {
+			finished.put(region.getName() + "/" + category.getId(), count);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package org.fruct.oss.gets.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpTransportTest {
+	private static final String BODY = "<response>points points points points points points</response>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String url;
+
+	// Written by test thread before request, read by server thread
+	private volatile String etag = "\"v1\"";
+
+	// Written by server thread
+	private volatile int requests;
+	private volatile String ifNoneMatch;
+	private volatile String acceptEncoding;
+	private volatile int compressedLength;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/body", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleBody(exchange);
+			}
+		});
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort() + "/body";
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void gzippedBodyIsDecompressedAndCounted() throws IOException {
+		HttpTransport.Response response = new HttpTransport(null).open(url, "request");
+		String body;
+		try {
+			body = Utils.inputStreamToString(response.getInputStream());
+		} finally {
+			response.close();
+		}
+
+		assertEquals(BODY, body);
+		assertEquals("gzip", acceptEncoding);
+		assertEquals(200, response.getCode());
+		assertEquals("\"v1\"", response.getETag());
+		assertEquals(compressedLength, response.getTiming().getBytes());
+	}
+
+	@Test
+	public void notModifiedResponseHasEmptyBody() throws IOException {
+		HttpTransport.Response response = new HttpTransport(null).open(url, "request", "\"v1\"", 0);
+		try {
+			assertTrue(response.isNotModified());
+			assertEquals(-1, response.getInputStream().read());
+		} finally {
+			response.close();
+		}
+
+		assertEquals("\"v1\"", ifNoneMatch);
+		assertEquals(0, response.getTiming().getBytes());
+	}
+
+	@Test
+	public void cachedDownloadIsRevalidated() throws IOException {
+		HttpTransport transport = new HttpTransport(folder.newFolder("cache"));
+
+		assertEquals(BODY, transport.download(url, "request", true));
+		assertNull(ifNoneMatch);
+
+		// Server answers 304, body comes from cache
+		assertEquals(BODY, transport.download(url, "request", true));
+		assertEquals("\"v1\"", ifNoneMatch);
+		assertEquals(2, requests);
+
+		// Other request body has its own cache entry
+		transport.download(url, "other request", true);
+		assertNull(ifNoneMatch);
+	}
+
+	@Test
+	public void notCacheableDownloadIsNotRevalidated() throws IOException {
+		HttpTransport transport = new HttpTransport(folder.newFolder("cache"));
+
+		transport.download(url, "request", false);
+		transport.download(url, "request", false);
+		assertNull(ifNoneMatch);
+		assertEquals(0, folder.getRoot().listFiles()[0].list().length);
+	}
+
+	@Test
+	public void responseWithoutValidatorsIsNotCached() throws IOException {
+		etag = null;
+		HttpTransport transport = new HttpTransport(folder.newFolder("cache"));
+
+		transport.download(url, "request", true);
+		transport.download(url, "request", true);
+		assertNull(ifNoneMatch);
+		assertFalse(folder.getRoot().listFiles()[0].list().length > 0);
+	}
+
+	private void handleBody(HttpExchange exchange) throws IOException {
+		InputStream input = exchange.getRequestBody();
+		while (input.read() >= 0) {
+			// Request body is not checked
+		}
+
+		requests++;
+		ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(ifNoneMatch)) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+		}
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+		gzip.write(BODY.getBytes("UTF-8"));
+		gzip.close();
+		compressedLength = compressed.size();
+
+		exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		exchange.sendResponseHeaders(200, compressed.size());
+		OutputStream output = exchange.getResponseBody();
+		output.write(compressed.toByteArray());
+		output.close();
+	}
+}
@@ -0,0 +1,34 @@
+package org.fruct.oss.gets.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalizedNamesTest {
+	private static final String NAMES = "{\"name\": \"Stairs\", \"name_ru\": \"Лестница\"}";
+
+	@Test
+	public void translationIsResolved() {
+		assertEquals("Лестница", LocalizedNames.resolve(NAMES, "ru"));
+	}
+
+	@Test
+	public void defaultNameIsUsedWithoutTranslation() {
+		assertEquals("Stairs", LocalizedNames.resolve(NAMES, "fi"));
+		assertEquals("Stairs", LocalizedNames.resolve(NAMES, null));
+	}
+
+	@Test
+	public void plainNameIsKept() {
+		assertEquals("Ramp", LocalizedNames.resolve("Ramp", "ru"));
+		assertEquals("Ramp {broken", LocalizedNames.resolve("Ramp {broken", "ru"));
+		assertNull(LocalizedNames.resolve(null, "ru"));
+	}
+
+	@Test
+	public void jsonWithoutDefaultNameIsKept() {
+		String rawName = "{\"name_ru\": \"Лестница\"}";
+		assertEquals(rawName, LocalizedNames.resolve(rawName, "en"));
+	}
+}
@@ -0,0 +1,92 @@
+package org.fruct.oss.gets.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpatialGridTest {
+	private static final int CELL = SpatialGrid.POINT_CELL_E6;
+
+	@Test
+	public void tileKeepsIndexes() {
+		int tile = SpatialGrid.tileOf(61786000, 34352000, CELL);
+
+		assertEquals(SpatialGrid.latIndex(61786000, CELL), SpatialGrid.tileLatIndex(tile));
+		assertEquals(SpatialGrid.lonIndex(34352000, CELL), SpatialGrid.tileLonIndex(tile));
+		assertEquals((90000000 + 61786000) / CELL, SpatialGrid.tileLatIndex(tile));
+		assertEquals((180000000 + 34352000) / CELL, SpatialGrid.tileLonIndex(tile));
+	}
+
+	@Test
+	public void cellContainsItsPoints() {
+		int latE6 = -33868000;
+		int lonE6 = -151209000;
+		int latIndex = SpatialGrid.latIndex(latE6, CELL);
+		int lonIndex = SpatialGrid.lonIndex(lonE6, CELL);
+
+		assertTrue(SpatialGrid.cellMinLatE6(latIndex, CELL) <= latE6);
+		assertTrue(SpatialGrid.cellMinLatE6(latIndex + 1, CELL) > latE6);
+		assertTrue(SpatialGrid.cellMinLonE6(lonIndex, CELL) <= lonE6);
+		assertTrue(SpatialGrid.cellMinLonE6(lonIndex + 1, CELL) > lonE6);
+	}
+
+	@Test
+	public void tilesOfOneLatitudeRowAreContiguous() {
+		int west = SpatialGrid.tileOf(61780000, 34300000, CELL);
+		int east = SpatialGrid.tileOf(61780000, 34310000, CELL);
+		int north = SpatialGrid.tileOf(61790000, 34300000, CELL);
+
+		assertEquals(west + 1, east);
+		assertEquals(west + (1 << 16), north);
+	}
+
+	@Test
+	public void coordinatesOutOfRangeAreClamped() {
+		assertEquals(SpatialGrid.latIndex(90000000, CELL), SpatialGrid.latIndex(95000000, CELL));
+		assertEquals(0, SpatialGrid.lonIndex(-200000000, CELL));
+	}
+
+	@Test
+	public void smallestCellFitsLongitudeIndex() {
+		int lonIndex = SpatialGrid.lonIndex(180000000, SpatialGrid.MIN_CELL_E6);
+		assertTrue(lonIndex <= 0xffff);
+
+		int tile = SpatialGrid.tileOf(90000000, 180000000, SpatialGrid.MIN_CELL_E6);
+		assertEquals(lonIndex, SpatialGrid.tileLonIndex(tile));
+	}
+
+	@Test
+	public void projectedDistanceUsesLongitudeScale() {
+		// 0.01 degree of latitude
+		assertEquals(1113.2, Math.sqrt(SpatialGrid.projectedDistanceSquared(60000000, 30000000,
+				60010000, 30000000, SpatialGrid.lonScale(60))), 0.01);
+
+		// 0.01 degree of longitude is half as long at 60 degrees latitude
+		assertEquals(556.6, Math.sqrt(SpatialGrid.projectedDistanceSquared(60000000, 30000000,
+				60000000, 30010000, SpatialGrid.lonScale(60))), 0.01);
+	}
+
+	@Test
+	public void segmentDistanceIsClampedToEnds() {
+		double lonScale = SpatialGrid.lonScale(0);
+
+		// Perpendicular to middle of segment along equator
+		assertEquals(1113.2, Math.sqrt(SpatialGrid.projectedSegmentDistanceSquared(10000, 5000,
+				0, 0, 0, 10000, lonScale)), 0.01);
+
+		// Beyond end of segment distance is measured to the end
+		assertEquals(Math.sqrt(SpatialGrid.projectedDistanceSquared(0, 20000, 0, 10000, lonScale)),
+				Math.sqrt(SpatialGrid.projectedSegmentDistanceSquared(0, 20000, 0, 0, 0, 10000, lonScale)), 1e-6);
+
+		// Degenerate segment is a point
+		assertEquals(Math.sqrt(SpatialGrid.projectedDistanceSquared(10000, 0, 0, 0, lonScale)),
+				Math.sqrt(SpatialGrid.projectedSegmentDistanceSquared(10000, 0, 0, 0, 0, 0, lonScale)), 1e-6);
+	}
+
+	@Test
+	public void sqlExpressionMatchesTileOf() {
+		assertEquals("(((lat + 90000000) / 10000) << 16) | ((lon + 180000000) / 10000)",
+				SpatialGrid.tileSqlExpression("lat", "lon", CELL));
+	}
+}
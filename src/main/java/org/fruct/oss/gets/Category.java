@@ -2,27 +2,15 @@ package org.fruct.oss.gets;
 
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
 
-import org.json.JSONObject;
+import org.fruct.oss.gets.utils.LocalizedNames;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Locale;
-import java.util.Map;
 
 public class Category implements Parcelable {
 
-    private static final Map<String, Bitmap> icons = Collections.synchronizedMap(new HashMap<String, Bitmap>());
 	// препятствия
 	public static final String CURB = "curb"; // бордюр
 	public static final String CROSSWALK = "crosswalk"; // пешеходный переход
@@ -41,7 +29,7 @@ public class Category implements Parcelable {
 
 
 	private final String name;
-	private Map<String, String> localNames;
+	private String localName;
 	private final String description;
 	private final String url;
 	private final String iconUrl;
@@ -55,11 +43,6 @@ public class Category implements Parcelable {
 		this.url = url;
 		this.id = id;
 		this.iconUrl = iconUrl;
-        if (!icons.containsKey(this.iconUrl)) {
-			Log.v(getClass().getSimpleName(), "Search in icons=" + icons.toString());
-            icons.put(iconUrl, null);
-            new RetrieveIconTask().execute(this.iconUrl);
-        }
 		this.published = published;
         this.isActive = true;
 	}
@@ -72,11 +55,7 @@ public class Category implements Parcelable {
 		this.iconUrl = cursor.getString(offset + 4);
 		this.published = cursor.getInt(offset + 5) != 0;
         this.isActive = cursor.getInt(offset + 6) != 0;
-        if (!icons.containsKey(this.iconUrl)) {
-            Log.v(getClass().getSimpleName(), "Search in icons=" + icons.toString());
-            icons.put(iconUrl, null);
-            new RetrieveIconTask().execute(this.iconUrl);
-        }
+		this.localName = cursor.getString(offset + 7);
     }
 
 	public Category(Parcel source) {
@@ -86,12 +65,7 @@ public class Category implements Parcelable {
 		this.iconUrl = source.readString();
 		this.id = source.readInt();
 		this.published = source.readInt() != 0;
-        this.published = source.readInt() != 0;
-        if (!icons.containsKey(this.iconUrl)) {
-            Log.v(getClass().getSimpleName(), "Search in icons=" + icons.toString());
-            icons.put(iconUrl, null);
-            new RetrieveIconTask().execute(this.iconUrl);
-        }
+        this.isActive = source.readInt() != 0;
 	}
 
 	public boolean isActive() {
@@ -102,37 +76,30 @@ public class Category implements Parcelable {
         isActive = active;
     }
 
+	/**
+	 * @return name in current locale, resolved when category was stored to database
+	 */
 	public String getName() {
-
-		if (localNames != null) {
-			//log.debug("Point key = " + "name_" + Locale.getDefault().getLanguage());
-			if (localNames.containsKey("name_" + Locale.getDefault().getLanguage()))
-				return localNames.get("name_" + Locale.getDefault().getLanguage());
-			else
-				return localNames.get("name");
+		if (localName == null) {
+			localName = LocalizedNames.resolve(name, Locale.getDefault().getLanguage());
 		}
+		return localName;
+	}
 
-		// если не распарсено, то парсим и в хеш
-		localNames = new HashMap();
-		try {
-			JSONObject json = new JSONObject(name);
-			Iterator<String> temp = json.keys();
-			while (temp.hasNext()) {
-				String key = temp.next();
-				localNames.put(key, json.get(key).toString());
-			}
-		} catch (Exception e) {
-			//log.debug("Catch exception: " + e.getMessage());
-			localNames.put("name", name);
-		}
+	/**
+	 * @return name as received from server, json with names in different locales
+	 */
+	public String getRawName() {
 		return name;
 	}
 
 	public String getIdentifiedName() {
-		if (this.localNames == null) {
-			getName();
+		String defaultName = LocalizedNames.resolve(name, null);
+		if (defaultName == null) {
+			return UNKNOWN_OBJECT;
 		}
-		switch (this.localNames.get("name")) {
+
+		switch (defaultName) {
 			case "Stairs": return STAIRS;
 			case "Object on the road": return OBJECT_ON_THE_ROAD;
 			case "Bus stop": return BUS_STOP;
@@ -155,7 +122,12 @@ public class Category implements Parcelable {
 		return iconUrl;
 	}
 
-	public Bitmap getIcon() {return icons.get(iconUrl); }
+	/**
+	 * @return cached icon or null if icon is not loaded yet
+	 */
+	public Bitmap getIcon() {
+		return IconCache.getInstance().get(iconUrl);
+	}
 
 	public int getId() {
 		return id;
@@ -213,30 +185,4 @@ public class Category implements Parcelable {
 			return new Category[size];
 		}
 	};
-
-	class RetrieveIconTask extends AsyncTask<String, Void, Bitmap> {
-        @Override
-        protected Bitmap doInBackground(String... src) {
-            try {
-                URL url = new URL(src[0]);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setDoInput(true);
-                connection.connect();
-                InputStream input = connection.getInputStream();
-                Bitmap myBitmap = BitmapFactory.decodeStream(input);
-                return myBitmap;
-            } catch (IOException e) {
-                // Log exception
-                Log.w(getClass().getSimpleName(), "Error download icon: " + e.getMessage());
-                return null;
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Bitmap s) {
-            super.onPostExecute(s);
-            icons.put(iconUrl, s);
-            Log.v(getClass().getSimpleName(), "Icon downloaded: " + icons);
-        }
-    }
 }
@@ -0,0 +1,155 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.HttpTransport;
+import org.osmdroid.util.GeoPoint;
+
+/**
+ * Planned points download of one category: circle to request and coverage tiles it refreshes
+ */
+class CategoryFetch {
+	private final Category category;
+	private final GeoPoint center;
+	private final int radius;
+	private final int[] tiles;
+
+	private String validator;
+	private String receivedValidator;
+	private volatile boolean isSuccessful;
+	private volatile boolean isNotModified;
+
+	// Measured by fetch thread, then read by writer after last chunk
+	private long startNanos;
+	private HttpTransport.Timing timing;
+	private long sinkNanos;
+	private int pointsParsed;
+
+	// Measured by writer
+	private long insertNanos;
+	private int pointsInserted;
+	private boolean isInsertFailed;
+
+	CategoryFetch(Category category, GeoPoint center, int radius, int[] tiles) {
+		this.category = category;
+		this.center = center;
+		this.radius = radius;
+		this.tiles = tiles;
+	}
+
+	public Category getCategory() {
+		return category;
+	}
+
+	public GeoPoint getCenter() {
+		return center;
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	public int[] getTiles() {
+		return tiles;
+	}
+
+	/**
+	 * @return key of fetched circle, under which response validator is stored
+	 */
+	public String getArea() {
+		return (int) (center.getLatitude() * 1e6) + "," + (int) (center.getLongitude() * 1e6) + "," + radius;
+	}
+
+	/**
+	 * @return validator of last complete download of the same circle, null if there is none
+	 */
+	public String getValidator() {
+		return validator;
+	}
+
+	public void setValidator(String validator) {
+		this.validator = validator;
+	}
+
+	/**
+	 * @return validator of this download, set by fetch thread before last chunk
+	 */
+	public String getReceivedValidator() {
+		return receivedValidator;
+	}
+
+	public void setReceivedValidator(String receivedValidator) {
+		this.receivedValidator = receivedValidator;
+	}
+
+	/**
+	 * @return server reported that points didn't change since {@link #getValidator()} was received
+	 */
+	public boolean isNotModified() {
+		return isNotModified;
+	}
+
+	public void setNotModified(boolean isNotModified) {
+		this.isNotModified = isNotModified;
+	}
+
+	public boolean isSuccessful() {
+		return isSuccessful;
+	}
+
+	public void setSuccessful(boolean isSuccessful) {
+		this.isSuccessful = isSuccessful;
+	}
+
+	/**
+	 * @return some points of fetch were not stored, so its tiles must not be marked updated
+	 */
+	boolean isInsertFailed() {
+		return isInsertFailed;
+	}
+
+	void setInsertFailed() {
+		isInsertFailed = true;
+	}
+
+	void onStarted() {
+		startNanos = System.nanoTime();
+	}
+
+	void onPointParsed() {
+		pointsParsed++;
+	}
+
+	void setTiming(HttpTransport.Timing timing) {
+		this.timing = timing;
+	}
+
+	/**
+	 * Add time parser was blocked by full writer queue
+	 */
+	void addSinkNanos(long nanos) {
+		sinkNanos += nanos;
+	}
+
+	void addInserted(int points, long nanos) {
+		pointsInserted += points;
+		insertNanos += nanos;
+	}
+
+	CategoryMetrics toMetrics(long endNanos) {
+		int status = !isSuccessful || isInsertFailed ? CategoryMetrics.STATUS_FAILED
+				: isNotModified ? CategoryMetrics.STATUS_NOT_MODIFIED : CategoryMetrics.STATUS_UPDATED;
+
+		long connectNanos = 0;
+		long readNanos = 0;
+		long parseNanos = 0;
+		long bytes = 0;
+		if (timing != null) {
+			connectNanos = timing.getConnectNanos();
+			readNanos = timing.getReadNanos();
+			parseNanos = Math.max(0, timing.getTransferNanos() - readNanos - sinkNanos);
+			bytes = timing.getBytes();
+		}
+
+		return new CategoryMetrics(category.getId(), status, connectNanos, readNanos, parseNanos, insertNanos,
+				startNanos > 0 ? endNanos - startNanos : 0, bytes, pointsParsed, pointsInserted);
+	}
+}
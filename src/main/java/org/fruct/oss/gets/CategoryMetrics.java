@@ -0,0 +1,106 @@
+package org.fruct.oss.gets;
+
+/**
+ * Measurements of points download of one category during refresh.
+ *
+ * Download is streamed, so phases overlap in time: transfer is time parser waited for network,
+ * parse is the rest of response reading except waiting for database writer,
+ * insert is time writer spent storing points of category.
+ */
+public class CategoryMetrics {
+	public static final int STATUS_UPDATED = 0;
+	public static final int STATUS_NOT_MODIFIED = 1;
+	public static final int STATUS_FAILED = 2;
+
+	private final int categoryId;
+	private final int status;
+	private final long connectNanos;
+	private final long transferNanos;
+	private final long parseNanos;
+	private final long insertNanos;
+	private final long elapsedNanos;
+	private final long bytes;
+	private final int pointsParsed;
+	private final int pointsInserted;
+
+	CategoryMetrics(int categoryId, int status, long connectNanos, long transferNanos, long parseNanos,
+					long insertNanos, long elapsedNanos, long bytes, int pointsParsed, int pointsInserted) {
+		this.categoryId = categoryId;
+		this.status = status;
+		this.connectNanos = connectNanos;
+		this.transferNanos = transferNanos;
+		this.parseNanos = parseNanos;
+		this.insertNanos = insertNanos;
+		this.elapsedNanos = elapsedNanos;
+		this.bytes = bytes;
+		this.pointsParsed = pointsParsed;
+		this.pointsInserted = pointsInserted;
+	}
+
+	public int getCategoryId() {
+		return categoryId;
+	}
+
+	/**
+	 * @return {@link #STATUS_UPDATED}, {@link #STATUS_NOT_MODIFIED} or {@link #STATUS_FAILED}
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return time until response status: DNS, connect, request upload and server processing
+	 */
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	public long getTransferNanos() {
+		return transferNanos;
+	}
+
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	public long getInsertNanos() {
+		return insertNanos;
+	}
+
+	/**
+	 * @return wall time from request start until last point stored
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return bytes received from network, before decompression
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getPointsParsed() {
+		return pointsParsed;
+	}
+
+	/**
+	 * @return points written to database, unchanged points are skipped
+	 */
+	public int getPointsInserted() {
+		return pointsInserted;
+	}
+
+	public double getPointsPerSecond() {
+		return elapsedNanos > 0 ? pointsParsed * 1e9 / elapsedNanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CategoryMetrics{category=" + categoryId + ", status=" + status
+				+ ", connect=" + connectNanos / 1000000 + " ms, transfer=" + transferNanos / 1000000
+				+ " ms, parse=" + parseNanos / 1000000 + " ms, insert=" + insertNanos / 1000000
+				+ " ms, bytes=" + bytes + ", parsed=" + pointsParsed + ", inserted=" + pointsInserted + "}";
+	}
+}
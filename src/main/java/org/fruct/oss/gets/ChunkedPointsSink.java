@@ -0,0 +1,77 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.HttpTransport;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Groups streamed points into fixed-size chunks and hands them to database writer queue.
+ * Bounded queue blocks parser when writer falls behind, blocked time is recorded in fetch metrics.
+ */
+class ChunkedPointsSink implements TimedPointsSink, ValidatedPointsSink {
+	private final BlockingQueue<PointsChunk> queue;
+	private final CategoryFetch fetch;
+	private final int chunkSize;
+
+	private List<Point> chunk;
+
+	ChunkedPointsSink(BlockingQueue<PointsChunk> queue, CategoryFetch fetch, int chunkSize) {
+		this.queue = queue;
+		this.fetch = fetch;
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void addPoint(Point point) throws InterruptedIOException {
+		if (chunk == null) {
+			chunk = new ArrayList<>(chunkSize);
+		}
+
+		chunk.add(point);
+		fetch.onPointParsed();
+
+		if (chunk.size() >= chunkSize) {
+			put(false);
+		}
+	}
+
+	@Override
+	public void onResponseTiming(HttpTransport.Timing timing) {
+		fetch.setTiming(timing);
+	}
+
+	@Override
+	public void onResponseValidator(String validator) {
+		fetch.setReceivedValidator(validator);
+	}
+
+	/**
+	 * Send remaining points and mark fetch finished
+	 */
+	public void finish() throws InterruptedIOException {
+		put(true);
+	}
+
+	private void put(boolean isLast) throws InterruptedIOException {
+		List<Point> points = chunk == null ? Collections.<Point>emptyList() : chunk;
+
+		try {
+			// Last chunk is put after response closed, and fetch must not be changed after it
+			if (isLast) {
+				queue.put(new PointsChunk(fetch, points, true));
+			} else {
+				long startTime = System.nanoTime();
+				queue.put(new PointsChunk(fetch, points, false));
+				fetch.addSinkNanos(System.nanoTime() - startTime);
+			}
+			chunk = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Points sink interrupted");
+		}
+	}
+}
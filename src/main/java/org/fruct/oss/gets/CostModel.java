@@ -0,0 +1,162 @@
+package org.fruct.oss.gets;
+
+import java.util.List;
+
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Cost of obstacles for set of active disabilities compiled into lookup table.
+ *
+ * Table has row per category and column per rating, value is {@link Disability#getFactor(int, int)}
+ * of all disabilities combined by maximum or sum. Without disabilities cost is equal to rating.
+ * Instances are immutable.
+ */
+public class CostModel {
+	public static final int COMBINE_MAX = 0;
+	public static final int COMBINE_SUM = 1;
+
+	// Ratings are 1..5, 0 means no obstacle
+	public static final int RATING_LEVELS = 6;
+
+	// Larger category id ranges are indexed by hash map
+	private static final int MAX_DENSE_SPAN = 65536;
+
+	private static final CostModel IDENTITY = new CostModel();
+
+	private final boolean isIdentity;
+	private final int[] table;
+
+	// Row of category is rowIndex[categoryId - minCategoryId] or rowMap.get(categoryId), -1 if category has no cost
+	private final int minCategoryId;
+	private final int[] rowIndex;
+	private final TIntIntMap rowMap;
+
+	private CostModel() {
+		isIdentity = true;
+		table = null;
+		minCategoryId = 0;
+		rowIndex = null;
+		rowMap = null;
+	}
+
+	private CostModel(int[] table, int minCategoryId, int[] rowIndex, TIntIntMap rowMap) {
+		this.isIdentity = false;
+		this.table = table;
+		this.minCategoryId = minCategoryId;
+		this.rowIndex = rowIndex;
+		this.rowMap = rowMap;
+	}
+
+	/**
+	 * @return model where cost is equal to rating
+	 */
+	public static CostModel identity() {
+		return IDENTITY;
+	}
+
+	/**
+	 * @param disabilities active disabilities with categories and factors
+	 * @param combine {@link #COMBINE_MAX} or {@link #COMBINE_SUM}
+	 */
+	public static CostModel compile(List<Disability> disabilities, int combine) {
+		if (disabilities.isEmpty()) {
+			return IDENTITY;
+		}
+
+		TIntIntMap rows = new TIntIntHashMap();
+		int minCategoryId = Integer.MAX_VALUE;
+		int maxCategoryId = Integer.MIN_VALUE;
+		for (Disability disability : disabilities) {
+			for (int categoryId : disability.getCategories()) {
+				if (!rows.containsKey(categoryId)) {
+					rows.put(categoryId, rows.size());
+					minCategoryId = Math.min(minCategoryId, categoryId);
+					maxCategoryId = Math.max(maxCategoryId, categoryId);
+				}
+			}
+		}
+
+		int[] table = new int[rows.size() * RATING_LEVELS];
+		for (Disability disability : disabilities) {
+			// getFactor uses first occurrence of category
+			TIntSet seen = new TIntHashSet();
+			for (int categoryId : disability.getCategories()) {
+				if (!seen.add(categoryId)) {
+					continue;
+				}
+
+				int row = rows.get(categoryId) * RATING_LEVELS;
+				for (int rating = 1; rating < RATING_LEVELS; rating++) {
+					int factor = disability.getFactor(categoryId, rating);
+					table[row + rating] = combine == COMBINE_SUM
+							? table[row + rating] + factor
+							: Math.max(table[row + rating], factor);
+				}
+			}
+		}
+
+		if (rows.isEmpty() || (long) maxCategoryId - minCategoryId >= MAX_DENSE_SPAN) {
+			return new CostModel(table, 0, null, rows);
+		}
+
+		int[] rowIndex = new int[maxCategoryId - minCategoryId + 1];
+		for (int i = 0; i < rowIndex.length; i++) {
+			rowIndex[i] = -1;
+		}
+		for (int categoryId : rows.keys()) {
+			rowIndex[categoryId - minCategoryId] = rows.get(categoryId);
+		}
+		return new CostModel(table, minCategoryId, rowIndex, null);
+	}
+
+	public boolean isIdentity() {
+		return isIdentity;
+	}
+
+	public int getCost(int categoryId, int rating) {
+		if (isIdentity) {
+			return rating;
+		}
+
+		if (rating <= 0 || rating >= RATING_LEVELS) {
+			return 0;
+		}
+
+		int row = row(categoryId);
+		return row < 0 ? 0 : table[row * RATING_LEVELS + rating];
+	}
+
+	/**
+	 * Score points given by parallel arrays
+	 *
+	 * @param costs receives costs, must be at least as long as ratings
+	 */
+	public void getCosts(int[] categoryIds, int[] ratings, int[] costs) {
+		for (int i = 0; i < ratings.length; i++) {
+			costs[i] = getCost(categoryIds[i], ratings[i]);
+		}
+	}
+
+	/**
+	 * @return sum of costs of snapshot rows
+	 */
+	public int getTotalCost(PointsSnapshot snapshot, int[] rows) {
+		int total = 0;
+		for (int row : rows) {
+			total += getCost(snapshot.getCategoryId(row), snapshot.getRating(row));
+		}
+		return total;
+	}
+
+	private int row(int categoryId) {
+		if (rowIndex != null) {
+			int index = categoryId - minCategoryId;
+			return index >= 0 && index < rowIndex.length ? rowIndex[index] : -1;
+		} else {
+			return rowMap.containsKey(categoryId) ? rowMap.get(categoryId) : -1;
+		}
+	}
+}
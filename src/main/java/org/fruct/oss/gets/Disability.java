@@ -1,8 +1,8 @@
 package org.fruct.oss.gets;
 
 import android.database.Cursor;
-import android.util.Xml;
 
+import org.fruct.oss.gets.utils.XmlParsers;
 import org.fruct.oss.gets.utils.XmlUtil;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -41,6 +41,12 @@ public class  Disability {
 		dbId = cursor.getInt(0);
 		name = cursor.getString(1);
 		isActive = cursor.getInt(2) != 0;
+
+		// Categories and factors are stored since database version 17
+		if (cursor.getColumnCount() > 4 && !cursor.isNull(3) && !cursor.isNull(4)) {
+			categories = parseInts(cursor.getString(3));
+			factors = parseInts(cursor.getString(4));
+		}
 	}
 
 	public String getName() {
@@ -79,13 +85,20 @@ public class  Disability {
 		//System.out.print(res );
 		//System.out.print(" ");
 		//System.out.println( factors.length);
-		if(res == -1 )
+		if(res == -1 || res >= factors.length)
 		{
 			return 0;
 		}
 		return factors[res];
 	}
 
+	/**
+	 * @return true if categories and factors are known
+	 */
+	public boolean isComplete() {
+		return categories != null && factors != null;
+	}
+
 	public int getDbId() {
 		return dbId;
 	}
@@ -98,8 +111,21 @@ public class  Disability {
 		return isActive;
 	}
 
+	private static int[] parseInts(String str) {
+		if (str.isEmpty()) {
+			return new int[0];
+		}
+
+		String[] parts = str.split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i]);
+		}
+		return values;
+	}
+
 	public static List<Disability> parse(Reader reader) throws IOException, XmlPullParserException {
-		XmlPullParser parser = Xml.newPullParser();
+		XmlPullParser parser = XmlParsers.newPullParser();
 		parser.setInput(reader);
 		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
 
@@ -112,7 +138,7 @@ public class  Disability {
 
 		parser.require(XmlPullParser.START_TAG, null, "disabilities");
 
-		while ((parser.next() != XmlPullParser.END_TAG)) {
+		while ((XmlUtil.next(parser) != XmlPullParser.END_TAG)) {
 			if (parser.getEventType() != XmlPullParser.START_TAG) {
 				continue;
 			}
@@ -137,7 +163,7 @@ public class  Disability {
 
 		parser.require(XmlPullParser.START_TAG, null, "disability");
 
-		while ((parser.next() != XmlPullParser.END_TAG)) {
+		while ((XmlUtil.next(parser) != XmlPullParser.END_TAG)) {
 			if (parser.getEventType() != XmlPullParser.START_TAG) {
 				continue;
 			}
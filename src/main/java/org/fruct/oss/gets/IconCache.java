@@ -0,0 +1,225 @@
+package org.fruct.oss.gets;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.fruct.oss.gets.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Category icon cache: bitmaps in memory limited by size in bytes, downloaded files on disk.
+ * Each url downloaded at most once at a time.
+ */
+public class IconCache {
+	private static final String TAG = "IconCache";
+
+	public static final int DOWNLOAD_THREADS = 2;
+	public static final long RETRY_INTERVAL = 60 * 1000;
+
+	private static IconCache instance;
+
+	private final LruCache<String, Bitmap> memoryCache;
+	private final ExecutorService downloadExecutor = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
+
+	// guarded by this
+	private final Set<String> pending = new HashSet<>();
+	private final Map<String, Long> failedTimes = new HashMap<>();
+	private File diskCacheDir;
+
+	private volatile int targetSize;
+
+	public static synchronized IconCache getInstance() {
+		if (instance == null) {
+			instance = new IconCache((int) Math.min(Runtime.getRuntime().maxMemory() / 32, Integer.MAX_VALUE));
+		}
+		return instance;
+	}
+
+	IconCache(int maxBytes) {
+		memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+			@Override
+			protected int sizeOf(String key, Bitmap value) {
+				return value.getByteCount();
+			}
+		};
+	}
+
+	/**
+	 * @param diskCacheDir directory for downloaded icons, null disables disk cache
+	 */
+	public synchronized void setDiskCacheDir(File diskCacheDir) {
+		if (diskCacheDir != null && !diskCacheDir.isDirectory() && !diskCacheDir.mkdirs()) {
+			Log.w(TAG, "Can't create icon cache directory " + diskCacheDir);
+			diskCacheDir = null;
+		}
+
+		this.diskCacheDir = diskCacheDir;
+	}
+
+	/**
+	 * Decode icons downsampled to at least given size in pixels, 0 disables downsampling.
+	 * Affects only icons that are not loaded yet.
+	 */
+	public void setTargetSize(int targetSize) {
+		this.targetSize = targetSize;
+	}
+
+	/**
+	 * @return icon if it is in memory, otherwise null and icon is scheduled for loading
+	 */
+	public Bitmap get(String url) {
+		if (Utils.isNullOrEmpty(url)) {
+			return null;
+		}
+
+		Bitmap bitmap = memoryCache.get(url);
+		if (bitmap == null) {
+			request(url);
+		}
+		return bitmap;
+	}
+
+	public void request(final String url) {
+		if (Utils.isNullOrEmpty(url) || memoryCache.get(url) != null) {
+			return;
+		}
+
+		synchronized (this) {
+			Long failedTime = failedTimes.get(url);
+			if (failedTime != null && System.currentTimeMillis() - failedTime < RETRY_INTERVAL) {
+				return;
+			}
+
+			if (!pending.add(url)) {
+				return;
+			}
+		}
+
+		downloadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Bitmap bitmap = null;
+				try {
+					bitmap = load(url);
+				} catch (IOException e) {
+					Log.w(TAG, "Error download icon: " + e.getMessage());
+				}
+
+				synchronized (IconCache.this) {
+					pending.remove(url);
+					if (bitmap != null) {
+						memoryCache.put(url, bitmap);
+						failedTimes.remove(url);
+					} else {
+						failedTimes.put(url, System.currentTimeMillis());
+					}
+				}
+			}
+		});
+	}
+
+	private Bitmap load(String url) throws IOException {
+		File file = getCacheFile(url);
+
+		if (file != null && file.isFile()) {
+			Bitmap bitmap = decode(readFile(file), targetSize);
+			if (bitmap != null) {
+				return bitmap;
+			}
+			file.delete();
+		}
+
+		byte[] data = download(url);
+		if (file != null) {
+			writeFile(file, data);
+		}
+		Log.v(TAG, "Icon downloaded: " + url);
+
+		return decode(data, targetSize);
+	}
+
+	private synchronized File getCacheFile(String url) {
+		return diskCacheDir == null ? null : new File(diskCacheDir, Utils.hashString(url));
+	}
+
+	private static byte[] download(String url) throws IOException {
+		HttpURLConnection conn = Utils.getConnection(url);
+		InputStream input = null;
+		try {
+			input = conn.getInputStream();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Utils.copyStream(input, output);
+			return output.toByteArray();
+		} finally {
+			Utils.silentClose(input);
+			conn.disconnect();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+			Utils.copyStream(input, output);
+			return output.toByteArray();
+		} finally {
+			Utils.silentClose(input);
+		}
+	}
+
+	private static void writeFile(File file, byte[] data) {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream output = null;
+		try {
+			output = new FileOutputStream(tmpFile);
+			output.write(data);
+			output.close();
+			output = null;
+
+			if (!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+			}
+		} catch (IOException e) {
+			Log.w(TAG, "Can't store icon " + file + ": " + e.getMessage());
+			tmpFile.delete();
+		} finally {
+			Utils.silentClose(output);
+		}
+	}
+
+	private static Bitmap decode(byte[] data, int targetSize) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+
+		if (targetSize > 0) {
+			options.inJustDecodeBounds = true;
+			BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+			int sampleSize = 1;
+			while (options.outWidth / (sampleSize * 2) >= targetSize
+					&& options.outHeight / (sampleSize * 2) >= targetSize) {
+				sampleSize *= 2;
+			}
+
+			options.inJustDecodeBounds = false;
+			options.inSampleSize = sampleSize;
+		}
+
+		return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+	}
+}
@@ -0,0 +1,174 @@
+package org.fruct.oss.gets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and histograms accumulated over all refreshes since service start.
+ * Safe to read from any thread.
+ */
+public class Metrics {
+	public static final String REFRESHES = "refreshes";
+	public static final String REFRESHES_INCOMPLETE = "refreshes_incomplete";
+	public static final String CATEGORIES_UPDATED = "categories_updated";
+	public static final String CATEGORIES_NOT_MODIFIED = "categories_not_modified";
+	public static final String CATEGORIES_FAILED = "categories_failed";
+	public static final String BYTES_RECEIVED = "bytes_received";
+	public static final String POINTS_PARSED = "points_parsed";
+	public static final String POINTS_INSERTED = "points_inserted";
+
+	// Histograms of milliseconds, except points per second
+	public static final String REFRESH_TIME = "refresh_time";
+	public static final String CONNECT_TIME = "connect_time";
+	public static final String TRANSFER_TIME = "transfer_time";
+	public static final String PARSE_TIME = "parse_time";
+	public static final String INSERT_TIME = "insert_time";
+	public static final String POINTS_PER_SECOND = "points_per_second";
+
+	private final Map<String, Counter> counters = new TreeMap<>();
+	private final Map<String, Histogram> histograms = new TreeMap<>();
+
+	Metrics() {
+		for (String name : new String[] { REFRESHES, REFRESHES_INCOMPLETE, CATEGORIES_UPDATED,
+				CATEGORIES_NOT_MODIFIED, CATEGORIES_FAILED, BYTES_RECEIVED, POINTS_PARSED, POINTS_INSERTED }) {
+			counters.put(name, new Counter());
+		}
+
+		for (String name : new String[] { REFRESH_TIME, CONNECT_TIME, TRANSFER_TIME, PARSE_TIME, INSERT_TIME,
+				POINTS_PER_SECOND }) {
+			histograms.put(name, new Histogram());
+		}
+	}
+
+	void record(RefreshMetrics refresh) {
+		counters.get(refresh.isCompleted() ? REFRESHES : REFRESHES_INCOMPLETE).increment(1);
+		histograms.get(REFRESH_TIME).record(refresh.getElapsedNanos() / 1000000);
+
+		for (CategoryMetrics category : refresh.getCategories()) {
+			switch (category.getStatus()) {
+			case CategoryMetrics.STATUS_UPDATED:
+				counters.get(CATEGORIES_UPDATED).increment(1);
+				break;
+			case CategoryMetrics.STATUS_NOT_MODIFIED:
+				counters.get(CATEGORIES_NOT_MODIFIED).increment(1);
+				break;
+			default:
+				counters.get(CATEGORIES_FAILED).increment(1);
+				break;
+			}
+
+			counters.get(BYTES_RECEIVED).increment(category.getBytes());
+			counters.get(POINTS_PARSED).increment(category.getPointsParsed());
+			counters.get(POINTS_INSERTED).increment(category.getPointsInserted());
+
+			histograms.get(CONNECT_TIME).record(category.getConnectNanos() / 1000000);
+			histograms.get(TRANSFER_TIME).record(category.getTransferNanos() / 1000000);
+			histograms.get(PARSE_TIME).record(category.getParseNanos() / 1000000);
+			histograms.get(INSERT_TIME).record(category.getInsertNanos() / 1000000);
+			if (category.getPointsParsed() > 0) {
+				histograms.get(POINTS_PER_SECOND).record((long) category.getPointsPerSecond());
+			}
+		}
+	}
+
+	public List<String> getCounterNames() {
+		return Collections.unmodifiableList(new ArrayList<>(counters.keySet()));
+	}
+
+	public List<String> getHistogramNames() {
+		return Collections.unmodifiableList(new ArrayList<>(histograms.keySet()));
+	}
+
+	/**
+	 * @return counter or null if there is no such counter
+	 */
+	public Counter getCounter(String name) {
+		return counters.get(name);
+	}
+
+	/**
+	 * @return histogram or null if there is no such histogram
+	 */
+	public Histogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	public static class Counter {
+		private final AtomicLong value = new AtomicLong();
+
+		void increment(long delta) {
+			value.addAndGet(delta);
+		}
+
+		public long get() {
+			return value.get();
+		}
+	}
+
+	/**
+	 * Distribution of non-negative values in power of two buckets, percentiles are accurate within factor of two
+	 */
+	public static class Histogram {
+		private static final int BUCKETS = 64;
+
+		// Bucket i > 0 holds values in [2^(i-1), 2^i), bucket 0 holds zero
+		private final long[] buckets = new long[BUCKETS];
+		private long count;
+		private long sum;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+
+		synchronized void record(long value) {
+			value = Math.max(value, 0);
+			buckets[value == 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value)]++;
+			count++;
+			sum += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getSum() {
+			return sum;
+		}
+
+		public synchronized long getMin() {
+			return count > 0 ? min : 0;
+		}
+
+		public synchronized long getMax() {
+			return count > 0 ? max : 0;
+		}
+
+		public synchronized double getMean() {
+			return count > 0 ? (double) sum / count : 0;
+		}
+
+		/**
+		 * @param quantile value between 0 and 1
+		 * @return upper bound of bucket containing quantile, limited by maximum value
+		 */
+		public synchronized long getPercentile(double quantile) {
+			if (count == 0) {
+				return 0;
+			}
+
+			long rank = (long) Math.ceil(quantile * count);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets[i];
+				if (seen >= rank && buckets[i] > 0) {
+					return Math.min(i == 0 ? 0 : (1L << i) - 1, max);
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package org.fruct.oss.gets;
+
+import java.util.List;
+
+public class Page<T> {
+	private final List<T> items;
+	private final long lastKey;
+	private final boolean isLast;
+
+	Page(List<T> items, long lastKey, boolean isLast) {
+		this.items = items;
+		this.lastKey = lastKey;
+		this.isLast = isLast;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return key to request next page after this one
+	 */
+	public long getLastKey() {
+		return lastKey;
+	}
+
+	/**
+	 * @return true if there are no rows after this page
+	 */
+	public boolean isLast() {
+		return isLast;
+	}
+}
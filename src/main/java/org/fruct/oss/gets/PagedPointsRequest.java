@@ -0,0 +1,18 @@
+package org.fruct.oss.gets;
+
+import android.database.Cursor;
+
+/**
+ * Points request paged by point._id in column 0
+ */
+abstract class PagedPointsRequest extends PointsRequest implements PagedRequest<Point> {
+	@Override
+	public Cursor doQuery() {
+		return doQuery(Long.MIN_VALUE, -1);
+	}
+
+	@Override
+	public long getKey(Cursor cursor) {
+		return cursor.getLong(0);
+	}
+}
@@ -0,0 +1,22 @@
+package org.fruct.oss.gets;
+
+import android.database.Cursor;
+
+/**
+ * Request which rows can be read in pages ordered by unique increasing key.
+ * Next page starts after key of last row of previous page, so pages stay consistent
+ * when rows are inserted or deleted between queries.
+ */
+public interface PagedRequest<T> extends Request<T> {
+	/**
+	 * @param afterKey key of last row of previous page or {@link Long#MIN_VALUE} for first page
+	 * @param limit maximum number of rows, negative for no limit
+	 * @return rows with key greater than afterKey ordered by key
+	 */
+	Cursor doQuery(long afterKey, int limit);
+
+	/**
+	 * @return key of current cursor row
+	 */
+	long getKey(Cursor cursor);
+}
@@ -0,0 +1,104 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.Function;
+
+/**
+ * Sequential reader of {@link PagedRequest} pages.
+ * After page delivered, next page is loaded in background so it is ready when requested.
+ * All methods must be called from main thread.
+ */
+public class Pager<T> {
+	private final PointsService service;
+	private final PagedRequest<T> request;
+	private final int pageSize;
+
+	private long nextKey = Long.MIN_VALUE;
+	private boolean isLoading;
+	private boolean isFinished;
+	private boolean isClosed;
+
+	private Page<T> prefetchedPage;
+	private Function<Page<T>> pendingCallback;
+
+	public Pager(PointsService service, PagedRequest<T> request, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive");
+		}
+
+		this.service = service;
+		this.request = request;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Load next page. Callback called immediately if page already prefetched.
+	 */
+	public void loadNextPage(Function<Page<T>> callback) {
+		if (pendingCallback != null) {
+			throw new IllegalStateException("Previous page is not loaded yet");
+		}
+
+		if (prefetchedPage != null) {
+			Page<T> page = prefetchedPage;
+			prefetchedPage = null;
+			deliver(page, callback);
+		} else {
+			pendingCallback = callback;
+			if (!isLoading) {
+				load();
+			}
+		}
+	}
+
+	/**
+	 * @return false if last page was loaded
+	 */
+	public boolean hasNextPage() {
+		return !isFinished || prefetchedPage != null;
+	}
+
+	/**
+	 * Drop prefetched page and ignore page that is being loaded
+	 */
+	public void close() {
+		isClosed = true;
+		prefetchedPage = null;
+		pendingCallback = null;
+	}
+
+	private void load() {
+		isLoading = true;
+		queryPage(nextKey, new Function<Page<T>>() {
+			@Override
+			public void call(Page<T> page) {
+				isLoading = false;
+				if (isClosed) {
+					return;
+				}
+
+				nextKey = page.getLastKey();
+				isFinished = page.isLast();
+
+				if (pendingCallback != null) {
+					Function<Page<T>> callback = pendingCallback;
+					pendingCallback = null;
+					deliver(page, callback);
+				} else {
+					prefetchedPage = page;
+				}
+			}
+		});
+	}
+
+	private void deliver(Page<T> page, Function<Page<T>> callback) {
+		if (!isFinished && !isLoading) {
+			load();
+		}
+		callback.call(page);
+	}
+
+	// Service query is overridden by tests
+	void queryPage(long afterKey, Function<Page<T>> callback) {
+		service.queryPage(request, afterKey, pageSize, callback);
+	}
+}
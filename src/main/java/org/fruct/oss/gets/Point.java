@@ -5,15 +5,13 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import org.fruct.oss.gets.api.GetsResponse;
+import org.fruct.oss.gets.utils.LocalizedNames;
 import org.fruct.oss.gets.utils.XmlUtil;
-import org.json.JSONObject;
 import org.osmdroid.util.GeoPoint;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Locale;
 import java.util.StringTokenizer;
 
@@ -26,8 +24,11 @@ public class Point implements Parcelable {
 	public static final String TEST_PROVIDER = "test_provider";
 	public static final String GETS_PROVIDER = "gets_provider";
 
+	// Category columns start after point columns in joined cursor
+	public static final int CURSOR_CATEGORY_OFFSET = 10;
+
 	private String name; // json с именами точки в разных локалях
-	private HashMap<String, String> localNames = null; // разобранная структура json
+	private String localName; // имя на языке пользователя
 	private String description;
 	private String url;
 	private int latE6;
@@ -56,6 +57,13 @@ public class Point implements Parcelable {
 	}
 
 	public Point(Cursor cursor, int offset) {
+		this(cursor, offset, new Category(cursor, offset + CURSOR_CATEGORY_OFFSET));
+	}
+
+	/**
+	 * Create point from cursor row with already mapped category
+	 */
+	public Point(Cursor cursor, int offset, Category category) {
 		this.name = cursor.getString(offset);
 		this.description = cursor.getString(offset + 1);
 		this.url = cursor.getString(offset + 2);
@@ -65,8 +73,9 @@ public class Point implements Parcelable {
 		this.uuid = cursor.getString(offset + 6);
 		this.difficulty = cursor.getInt(offset + 7);
 		this.isPrivate = cursor.getInt(offset + 8) != 0;
+		this.localName = cursor.getString(offset + 9);
 
-		this.category = new Category(cursor, offset + 9);
+		this.category = category;
 	}
 
 	public Point(Parcel source) {
@@ -86,28 +95,20 @@ public class Point implements Parcelable {
 
 	}
 
+	/**
+	 * @return name in current locale, resolved when point was stored to database
+	 */
 	public String getName() {
-		if (localNames != null) {
-			//log.debug("Point key = " + "name_" + Locale.getDefault().getLanguage());
-			if (localNames.containsKey("name_" + Locale.getDefault().getLanguage()))
-				return localNames.get("name_" + Locale.getDefault().getLanguage());
-			else
-				return localNames.get("name");
+		if (localName == null) {
+			localName = LocalizedNames.resolve(name, Locale.getDefault().getLanguage());
 		}
+		return localName;
+	}
 
-		// если не распарсено, то парсим и в хеш
-		localNames = new HashMap();
-		try {
-			JSONObject json = new JSONObject(name);
-			Iterator<String> temp = json.keys();
-			while (temp.hasNext()) {
-				String key = temp.next();
-				localNames.put(key, json.get(key).toString());
-			}
-		} catch (Exception e) {
-			//log.debug("Catch exception: " + e.getMessage());
-			localNames.put("name", name);
-		}
+	/**
+	 * @return name as received from server, json with names in different locales
+	 */
+	public String getRawName() {
 		return name;
 	}
 
@@ -188,7 +189,7 @@ public class Point implements Parcelable {
 		parser.require(XmlPullParser.START_TAG, null, "Placemark");
 		Point point = new Point();
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
@@ -235,7 +236,7 @@ public class Point implements Parcelable {
 	private static void readExtendedData(XmlPullParser parser, Point point) throws IOException, XmlPullParserException {
 		parser.require(XmlPullParser.START_TAG, null, "ExtendedData");
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
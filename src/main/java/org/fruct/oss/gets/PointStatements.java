@@ -0,0 +1,22 @@
+package org.fruct.oss.gets;
+
+/**
+ * Statements writing rows of point table, shared by PointsDatabase and upsert benchmark.
+ * Both statements bind columns in same order: name, description, url, lat, lon, tile, categoryId,
+ * provider, difficulty, private, hash, localName, visible, rating, then uuid as 15th argument.
+ */
+public class PointStatements {
+	public static final int UUID_INDEX = 15;
+
+	public static final String UPDATE_POINT = "UPDATE point SET " +
+			"name=?, description=?, url=?, lat=?, lon=?, tile=?, categoryId=?, provider=?, " +
+			"difficulty=?, private=?, hash=?, localName=?, visible=?, rating=? WHERE uuid=?;";
+
+	public static final String INSERT_POINT = "INSERT INTO point " +
+			"(name, description, url, lat, lon, tile, categoryId, provider, " +
+			"difficulty, private, hash, localName, visible, rating, uuid) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+	private PointStatements() {
+	}
+}
@@ -0,0 +1,135 @@
+package org.fruct.oss.gets;
+
+import org.osmdroid.util.BoundingBox;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Description of changed points: individual points added, updated or removed and
+ * categories which all points could change, e.g. became visible or hidden.
+ *
+ * Changes are accumulated by {@link #merge(PointsChange)}, so one object can describe burst of updates.
+ */
+public class PointsChange {
+	private final Set<String> uuids = new HashSet<>();
+	private final TIntSet pointCategoryIds = new TIntHashSet();
+	private final TIntSet categoryIds = new TIntHashSet();
+
+	private int minLatE6 = Integer.MAX_VALUE;
+	private int minLonE6 = Integer.MAX_VALUE;
+	private int maxLatE6 = Integer.MIN_VALUE;
+	private int maxLonE6 = Integer.MIN_VALUE;
+
+	private boolean isFull;
+	private boolean isRemoteUpdate;
+
+	/**
+	 * @return change of all points
+	 */
+	public static PointsChange full() {
+		PointsChange change = new PointsChange();
+		change.isFull = true;
+		return change;
+	}
+
+	/**
+	 * @return change of all points of category
+	 */
+	public static PointsChange category(int categoryId) {
+		PointsChange change = new PointsChange();
+		change.categoryIds.add(categoryId);
+		return change;
+	}
+
+	/**
+	 * Add point stored or removed at given coordinates
+	 */
+	void addPoint(String uuid, int categoryId, int latE6, int lonE6) {
+		uuids.add(uuid);
+		pointCategoryIds.add(categoryId);
+
+		minLatE6 = Math.min(minLatE6, latE6);
+		minLonE6 = Math.min(minLonE6, lonE6);
+		maxLatE6 = Math.max(maxLatE6, latE6);
+		maxLonE6 = Math.max(maxLonE6, lonE6);
+	}
+
+	void setRemoteUpdate(boolean isRemoteUpdate) {
+		this.isRemoteUpdate = isRemoteUpdate;
+	}
+
+	public void merge(PointsChange other) {
+		uuids.addAll(other.uuids);
+		pointCategoryIds.addAll(other.pointCategoryIds);
+		categoryIds.addAll(other.categoryIds);
+
+		minLatE6 = Math.min(minLatE6, other.minLatE6);
+		minLonE6 = Math.min(minLonE6, other.minLonE6);
+		maxLatE6 = Math.max(maxLatE6, other.maxLatE6);
+		maxLonE6 = Math.max(maxLonE6, other.maxLonE6);
+
+		isFull |= other.isFull;
+		isRemoteUpdate |= other.isRemoteUpdate;
+	}
+
+	public boolean isEmpty() {
+		return !isFull && uuids.isEmpty() && categoryIds.isEmpty();
+	}
+
+	/**
+	 * @return true if any point could change, other fields should be ignored
+	 */
+	public boolean isFull() {
+		return isFull;
+	}
+
+	/**
+	 * @return true if change contains points received from server
+	 */
+	public boolean isRemoteUpdate() {
+		return isRemoteUpdate;
+	}
+
+	/**
+	 * @return uuids of individual points added, updated or removed
+	 */
+	public Set<String> getUuids() {
+		return Collections.unmodifiableSet(uuids);
+	}
+
+	/**
+	 * @return categories which all points could change
+	 */
+	public int[] getCategoryIds() {
+		return categoryIds.toArray();
+	}
+
+	/**
+	 * @return true if points of category are affected by change
+	 */
+	public boolean containsCategory(int categoryId) {
+		return isFull || categoryIds.contains(categoryId) || pointCategoryIds.contains(categoryId);
+	}
+
+	/**
+	 * @return area containing individual changed points, null if there are no such points
+	 */
+	public BoundingBox getBoundingBox() {
+		if (uuids.isEmpty()) {
+			return null;
+		}
+
+		return new BoundingBox(maxLatE6 / 1e6, maxLonE6 / 1e6, minLatE6 / 1e6, minLonE6 / 1e6);
+	}
+
+	@Override
+	public String toString() {
+		return "PointsChange{full=" + isFull + ", points=" + uuids.size() + ", categories=" + categoryIds.size()
+				+ ", remote=" + isRemoteUpdate + "}";
+	}
+}
@@ -0,0 +1,31 @@
+package org.fruct.oss.gets;
+
+import java.util.List;
+
+/**
+ * Portion of streamed points passed from fetch task to database writer.
+ * Last chunk of fetch is always sent, even if fetch failed.
+ */
+class PointsChunk {
+	private final CategoryFetch fetch;
+	private final List<Point> points;
+	private final boolean isLast;
+
+	PointsChunk(CategoryFetch fetch, List<Point> points, boolean isLast) {
+		this.fetch = fetch;
+		this.points = points;
+		this.isLast = isLast;
+	}
+
+	public CategoryFetch getFetch() {
+		return fetch;
+	}
+
+	public List<Point> getPoints() {
+		return points;
+	}
+
+	public boolean isLast() {
+		return isLast;
+	}
+}
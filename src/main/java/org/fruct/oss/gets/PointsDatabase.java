@@ -5,30 +5,116 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import org.fruct.oss.gets.annotations.Blocking;
+import org.fruct.oss.gets.utils.LocalizedNames;
+import org.fruct.oss.gets.utils.SpatialGrid;
+import org.osmdroid.util.GeoPoint;
+
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TObjectLongMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 public class PointsDatabase implements Closeable {
     /**
-     *  version 10: add Category.active
+     *  version 9: add Point.private, Category.published, Category.active
+     *  version 10: add point.tile spatial key
+     *  version 11: add tile_coverage
+     *  version 12: add point.hash
+     *  version 13: add localName to point and category, metadata
+     *  version 14: add point_search full-text index
+     *  version 15: add point.visible, category.visible
+     *  version 16: add outbox
+     *  version 17: add point.rating, disability.categories, disability.factors
+     *  version 18: add fetch_validator
      */
-	public static final int VERSION = 9; // Published 8
+	public static final int VERSION = 18; // Published 8
 	private final Context context;
 	private final Helper helper;
 	private final SQLiteDatabase db;
 	private  double[] factors;
-	private Disability dis;
-	private static final String[] COLUMNS_DISABILITY = { "_id", "name", "active" };
+	private volatile CostModel costModel = CostModel.identity();
+	private volatile String language;
+
+	// Categories with visible = 1, used for points being inserted
+	private volatile TIntSet visibleCategories = new TIntHashSet();
+	private static final String[] COLUMNS_DISABILITY = { "_id", "name", "active", "categories", "factors" };
 	private static final String[] COLUMNS_ID = { "_id" };
-	private static final String[] COLUMNS_CATEGORY = { "_id", "name", "description", "url", "iconUrl", "published", "active"};
+	private static final String[] COLUMNS_LOCAL_NAME = { "localName" };
+	private static final String[] COLUMNS_CATEGORY = { "_id", "name", "description", "url", "iconUrl", "published", "active", "localName" };
 	private static final String[] COLUMNS_POINT = { "_id", "name", "description", "url", "lat", "lon", "categoryId", "provider", "uuid", "difficulty" };
 
+	private static final String METADATA_LANGUAGE = "language";
+	private static final String METADATA_COST_COMBINE = "costCombine";
+	private static final String METADATA_REFRESH_RUN = "refreshRun";
+
+	// States of outbox item
+	private static final int OUTBOX_PENDING = 0;
+	private static final int OUTBOX_UPLOADING = 1;
+
+	private static final String FROM_OUTBOX_POINT_CATEGORY = "FROM outbox INNER JOIN point ON outbox.uuid = point.uuid " +
+			"INNER JOIN category ON point.categoryId = category._id ";
+
+	// point_search row has docid of point, text is normalized by normalizeSearchText
+	private static final String INSERT_POINT_SEARCH = "INSERT INTO point_search (docid, name, description, category) " +
+			"VALUES (?, ?, ?, ?);";
+
+	// Uuids of points received by running fetch of category, compared with stored points by deleteMissingPoints.
+	// Database uses single connection without WAL, so temp table lives until database closed
+	private static final String TEMP_TABLE_RECEIVED_UUID = "CREATE TEMP TABLE IF NOT EXISTS received_uuid " +
+			"(categoryId INTEGER, uuid TEXT, PRIMARY KEY (categoryId, uuid));";
+
+	// SQLite limit of bound parameters is 999
+	private static final int MAX_QUERY_ARGS = 500;
+
+	private static final double DELETE_RADIUS_FACTOR = 0.95;
+
+	// First search radius of nearest points query, doubled until enough points found
+	private static final int NEAREST_START_RADIUS = 250;
+	private static final int NEAREST_MAX_RADIUS = 20000000;
+
+	// Tile rows queried as separate key ranges, larger boxes scan single range between corner tiles
+	private static final int MAX_TILE_RANGES = 32;
+
+	private static final String SELECT_POINT_CATEGORY = "SELECT point._id, point.name, point.description, point.url, " +
+			"point.lat, point.lon, point.provider, point.uuid, point.difficulty, point.private, point.localName, " +
+			"category._id, category.name, category.description, category.url, category.iconUrl, category.published, " +
+			"category.active, category.localName ";
+
+	// Keyset pagination by point._id, rowid order needs no sorting
+	private static final String PAGE_SELECTION = "AND point._id > ? ORDER BY point._id LIMIT ?;";
+
+	// point.visible is maintained by updateVisibility, so visible points are read by single index
+	private static final String FROM_VISIBLE_POINTS = "FROM point INNER JOIN category ON point.categoryId = category._id " +
+			"WHERE point.visible = 1 ";
+
+	/**
+	 * Open database schema. Derived data is brought up to date separately by {@link #updateDerivedData()}.
+	 */
 	public PointsDatabase(Context context) {
 		this.context = context;
 		this.helper = new Helper(context);
 		this.db = helper.getWritableDatabase();
+		db.execSQL(TEMP_TABLE_RECEIVED_UUID);
+
+		costModel = compileCostModel();
 
 		/*File dbFile = new File(db.getPath());
 
@@ -44,6 +130,24 @@ public class PointsDatabase implements Closeable {
 		}*/
 	}
 
+	/**
+	 * Resolve localized names for current locale, fill search index created by upgrade and
+	 * recompute point visibility. Takes long on large database after upgrade or locale change,
+	 * so it must be called on background thread before any point is written.
+	 *
+	 * @return true if localized names or visibility of stored points changed
+	 */
+	@Blocking
+	public boolean updateDerivedData() {
+		boolean isLanguageChanged = setLanguage(Locale.getDefault().getLanguage());
+		if (!isLanguageChanged && helper.isSearchIndexCreated) {
+			rebuildSearchIndex();
+		}
+		helper.isSearchIndexCreated = false;
+
+		return updateVisibility().length > 0 || isLanguageChanged;
+	}
+
 	@Override
 	public void close() {
 		helper.close();
@@ -56,73 +160,507 @@ public class PointsDatabase implements Closeable {
 			throw new IllegalArgumentException("Category can't be null");
 		}
 
-		ContentValues cv = new ContentValues(4);
-		cv.put("name", category.getName());
+		String localName = LocalizedNames.resolve(category.getRawName(), language);
+
+		ContentValues cv = new ContentValues(7);
+		cv.put("name", category.getRawName());
+		cv.put("localName", localName);
 		cv.put("description", category.getDescription());
 		cv.put("url", category.getUrl());
 		cv.put("iconUrl", category.getIconUrl());
 		cv.put("published", category.isPublished());
 
-		if (!isCategoryExists(category)) {
+		Cursor cursor = db.query("category", COLUMNS_LOCAL_NAME, "_id=?", toArray(category.getId()), null, null, null);
+		boolean isExists = cursor.moveToFirst();
+		String oldLocalName = isExists ? cursor.getString(0) : null;
+		cursor.close();
+
+		if (!isExists) {
 			cv.put("_id", category.getId());
 			db.insert("category", null, cv);
+			updateVisibility();
 		} else {
 			db.update("category", cv, "_id=?", toArray(category.getId()));
+
+			// Category name is indexed with each point of category
+			if (localName == null ? oldLocalName != null : !localName.equals(oldLocalName)) {
+				indexPoints("point.categoryId=?", toArray(category.getId()));
+			}
 		}
 	}
 
-	public void insertPoints(List<Point> points) {
+	/**
+	 * Insert or update points in one transaction. Points stored with same content are skipped.
+	 *
+	 * @param change receives points actually written, unchanged if transaction failed
+	 * @return number of points actually written
+	 * @throws android.database.SQLException if points can't be written, then none of them is written
+	 */
+	public int insertPoints(List<Point> points, PointsChange change) {
+		long startTime = System.nanoTime();
+		TLongList writtenIds = new TLongArrayList(points.size());
+		PointsChange written = new PointsChange();
+		SQLiteStatement update = db.compileStatement(PointStatements.UPDATE_POINT);
+		SQLiteStatement insert = db.compileStatement(PointStatements.INSERT_POINT);
+
+		db.beginTransaction();
+		try {
+			TObjectLongMap<String> storedHashes = new TObjectLongHashMap<>(points.size());
+			TObjectLongMap<String> storedIds = new TObjectLongHashMap<>(points.size());
+			loadStoredPoints(points, storedHashes, storedIds);
+
+			// Costs of whole batch are computed in one pass over lookup table
+			int[] categoryIds = new int[points.size()];
+			int[] ratings = new int[points.size()];
+			int[] difficulties = new int[points.size()];
+			for (int i = 0; i < categoryIds.length; i++) {
+				Point point = points.get(i);
+				categoryIds[i] = point.getCategory().getId();
+				ratings[i] = point.getDifficulty();
+			}
+			costModel.getCosts(categoryIds, ratings, difficulties);
+
+			for (int i = 0; i < categoryIds.length; i++) {
+				Point point = points.get(i);
+				long hash = contentHash(point, difficulties[i]);
+				if (storedHashes.containsKey(point.getUuid()) && storedHashes.get(point.getUuid()) == hash) {
+					continue;
+				}
+
+				writtenIds.add(writePoint(update, insert, point, difficulties[i], storedIds));
+				written.addPoint(point.getUuid(), point.getCategory().getId(), point.getLatE6(), point.getLonE6());
+			}
+
+			indexPoints(writtenIds);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			update.close();
+			insert.close();
+		}
+
+		change.merge(written);
+
+		float time = (System.nanoTime() - startTime) * 1e-9f;
+		Log.v(getClass().getSimpleName(), "Inserted " + writtenIds.size() + " of " + points.size() + " points in " + time
+				+ " s, " + (int) (points.size() / time) + " points/s");
+		return writtenIds.size();
+	}
+
+	/**
+	 * Remember uuids of points received for category, so memory used by fetch doesn't grow with response size
+	 *
+	 * @see #deleteMissingPoints(int, GeoPoint, int, PointsChange)
+	 */
+	public void insertReceivedUuids(int categoryId, List<Point> points) {
+		SQLiteStatement insert = db.compileStatement(
+				"INSERT OR IGNORE INTO received_uuid (categoryId, uuid) VALUES (?, ?);");
+
 		db.beginTransaction();
 		try {
 			for (Point point : points) {
-				insertPoint(point);
+				insert.bindLong(1, categoryId);
+				insert.bindString(2, point.getUuid());
+				insert.executeInsert();
 			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+		}
+	}
+
+	public void clearReceivedUuids(int categoryId) {
+		db.delete("received_uuid", "categoryId=?", toArray(categoryId));
+	}
 
+	/**
+	 * Forget uuids left by fetches of cancelled refresh
+	 */
+	public void clearReceivedUuids() {
+		db.delete("received_uuid", null, null);
+	}
+
+	/**
+	 * Delete remote points of category inside circle that are not among uuids received from server
+	 * for the same circle by {@link #insertReceivedUuids(int, List)}.
+	 *
+	 * @param change receives deleted points
+	 * @return number of deleted points
+	 */
+	public int deleteMissingPoints(int categoryId, GeoPoint center, int radius, PointsChange change) {
+		int centerLatE6 = (int) (center.getLatitude() * 1e6);
+		int centerLonE6 = (int) (center.getLongitude() * 1e6);
+		double lonScale = SpatialGrid.lonScale(center.getLatitude());
+		int dLatE6 = (int) (radius / SpatialGrid.METERS_PER_DEGREE * 1e6);
+		int dLonE6 = (int) (radius / (SpatialGrid.METERS_PER_DEGREE * lonScale) * 1e6);
+
+		StringBuilder sql = new StringBuilder("SELECT point._id, point.uuid, point.lat, point.lon FROM point " +
+				"WHERE point.categoryId=? AND point.provider=? " +
+				"AND point.uuid NOT IN (SELECT uuid FROM received_uuid WHERE received_uuid.categoryId=?) AND ");
+		List<String> args = new ArrayList<>();
+		args.add(String.valueOf(categoryId));
+		args.add(Point.GETS_PROVIDER);
+		args.add(String.valueOf(categoryId));
+		appendBoxSelection(sql, args, centerLatE6 - dLatE6, centerLonE6 - dLonE6,
+				centerLatE6 + dLatE6, centerLonE6 + dLonE6);
+
+		// Points near circle border are kept, server may measure distance differently
+		double maxDistance = radius * DELETE_RADIUS_FACTOR;
+		TLongList missingIds = new TLongArrayList();
+		PointsChange deleted = new PointsChange();
+		Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+		while (cursor.moveToNext()) {
+			if (SpatialGrid.projectedDistanceSquared(cursor.getInt(2), cursor.getInt(3),
+					centerLatE6, centerLonE6, lonScale) < maxDistance * maxDistance) {
+				missingIds.add(cursor.getLong(0));
+				deleted.addPoint(cursor.getString(1), categoryId, cursor.getInt(2), cursor.getInt(3));
+			}
+		}
+		cursor.close();
+
+		if (missingIds.isEmpty()) {
+			return 0;
+		}
+
+		db.beginTransaction();
+		try {
+			for (int i = 0; i < missingIds.size(); i++) {
+				deletePoint(missingIds.get(i));
+			}
 			db.setTransactionSuccessful();
-		} catch (Exception ex) {
-            Log.d(getClass().getSimpleName(), "Insert point error: " + ex.getMessage() + ex.getStackTrace()[0]);
-        } finally {
+		} finally {
+			db.endTransaction();
+		}
+
+		change.merge(deleted);
+
+		return missingIds.size();
+	}
+
+	private void deletePoint(long id) {
+		db.delete("point", "_id=?", toArray(id));
+		db.delete("point_search", "docid=?", toArray(id));
+	}
+
+	private void indexPoints(TLongList ids) {
+		for (int from = 0; from < ids.size(); from += MAX_QUERY_ARGS) {
+			int to = Math.min(ids.size(), from + MAX_QUERY_ARGS);
+
+			StringBuilder selection = new StringBuilder("point._id IN (");
+			for (int i = from; i < to; i++) {
+				if (i > from)
+					selection.append(',');
+				selection.append(ids.get(i));
+			}
+			selection.append(")");
+
+			indexPoints(selection.toString(), null);
+		}
+	}
+
+	/**
+	 * Replace point_search rows of points matching selection
+	 */
+	private void indexPoints(String selection, String[] args) {
+		SQLiteStatement delete = db.compileStatement("DELETE FROM point_search WHERE docid=?;");
+		SQLiteStatement insert = db.compileStatement(INSERT_POINT_SEARCH);
+		Cursor cursor = db.rawQuery("SELECT point._id, point.localName, point.description, category.localName " +
+				"FROM point LEFT JOIN category ON point.categoryId = category._id WHERE " + selection + ";", args);
+		try {
+			while (cursor.moveToNext()) {
+				long id = cursor.getLong(0);
+				delete.bindLong(1, id);
+				delete.execute();
+
+				insert.bindLong(1, id);
+				bindString(insert, 2, normalizeSearchText(cursor.getString(1)));
+				bindString(insert, 3, normalizeSearchText(cursor.getString(2)));
+				bindString(insert, 4, normalizeSearchText(cursor.getString(3)));
+				insert.executeInsert();
+			}
+		} finally {
+			cursor.close();
+			delete.close();
+			insert.close();
+		}
+	}
+
+	private void rebuildSearchIndex() {
+		long startTime = System.nanoTime();
+		db.beginTransaction();
+		try {
+			db.execSQL("DELETE FROM point_search;");
+			indexPoints("1", null);
+			db.setTransactionSuccessful();
+		} finally {
 			db.endTransaction();
 		}
+		Log.i(getClass().getSimpleName(), "Search index rebuilt in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+	}
+
+	/**
+	 * Lower case text with punctuation replaced by spaces.
+	 * FTS simple tokenizer folds only ASCII letters, so case of other letters is folded here.
+	 */
+	private static String normalizeSearchText(String text) {
+		if (text == null) {
+			return null;
+		}
+
+		char[] chars = text.toLowerCase(Locale.ROOT).toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			if (!Character.isLetterOrDigit(chars[i])) {
+				chars[i] = ' ';
+			}
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return FTS query matching all words of text as prefixes, null if text has no words
+	 */
+	private static String prefixSearchQuery(String text, String column) {
+		StringBuilder query = new StringBuilder();
+		for (String word : normalizeSearchText(text).split(" ")) {
+			if (word.isEmpty())
+				continue;
+
+			if (query.length() > 0)
+				query.append(' ');
+			if (column != null)
+				query.append(column).append(':');
+			query.append(word).append('*');
+		}
+		return query.length() == 0 ? null : query.toString();
+	}
+
+	/**
+	 * Load content hashes and ids of stored points with uuids of given points.
+	 * Rows written before hashes were stored have only id.
+	 */
+	private void loadStoredPoints(List<Point> points, TObjectLongMap<String> hashes, TObjectLongMap<String> ids) {
+		for (int from = 0; from < points.size(); from += MAX_QUERY_ARGS) {
+			int to = Math.min(points.size(), from + MAX_QUERY_ARGS);
+
+			StringBuilder sql = new StringBuilder("SELECT uuid, hash, _id FROM point WHERE uuid IN (");
+			String[] args = new String[to - from];
+			for (int i = from; i < to; i++) {
+				sql.append(i == from ? "?" : ",?");
+				args[i - from] = points.get(i).getUuid();
+			}
+			sql.append(");");
+
+			Cursor cursor = db.rawQuery(sql.toString(), args);
+			while (cursor.moveToNext()) {
+				if (!cursor.isNull(1)) {
+					hashes.put(cursor.getString(0), cursor.getLong(1));
+				}
+				ids.put(cursor.getString(0), cursor.getLong(2));
+			}
+			cursor.close();
+		}
+	}
+
+	private static long contentHash(Point point, int difficulty) {
+		long hash = 17;
+		hash = 31 * hash + hashString(point.getRawName());
+		hash = 31 * hash + hashString(point.getDescription());
+		hash = 31 * hash + hashString(point.getUrl());
+		hash = 31 * hash + hashString(point.getProvider());
+		hash = 31 * hash + point.getLatE6();
+		hash = 31 * hash + point.getLonE6();
+		hash = 31 * hash + point.getCategory().getId();
+		hash = 31 * hash + difficulty;
+		hash = 31 * hash + point.getDifficulty();
+		hash = 31 * hash + (point.isPrivate() ? 1 : 0);
+		return hash;
+	}
+
+	private static int hashString(String str) {
+		return str == null ? 0 : str.hashCode();
 	}
 
+	/**
+	 * Replace local uuid of uploaded point with uuid assigned by server and remove point from outbox.
+	 * If point with server uuid was already downloaded, local copy is removed.
+	 */
 	public void markAsUploaded(Point oldPoint, String newUuid) {
+		db.beginTransaction();
+		try {
+			db.delete("outbox", "uuid=?", toArray(oldPoint.getUuid()));
+
+			Cursor cursor = db.query("point", COLUMNS_ID, "uuid=?", toArray(newUuid), null, null, null);
+			boolean isDownloaded = cursor.moveToFirst();
+			cursor.close();
+
+			if (isDownloaded) {
+				cursor = db.query("point", COLUMNS_ID, "uuid=?", toArray(oldPoint.getUuid()), null, null, null);
+				if (cursor.moveToFirst()) {
+					deletePoint(cursor.getLong(0));
+				}
+				cursor.close();
+			} else {
+				ContentValues cv = new ContentValues(2);
+				cv.put("uuid", newUuid);
+				cv.put("provider", Point.GETS_PROVIDER);
+				db.update("point", cv, "uuid=?", toArray(oldPoint.getUuid()));
+			}
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Load local points waiting for upload which retry time has come and mark them as uploading
+	 */
+	public List<Point> loadOutbox(long now, int limit) {
+		Cursor cursor = db.rawQuery(SELECT_POINT_CATEGORY + FROM_OUTBOX_POINT_CATEGORY +
+				"WHERE outbox.state=? AND outbox.nextAttempt<=? ORDER BY outbox.nextAttempt LIMIT ?;",
+				toArray(OUTBOX_PENDING, now, limit));
+
+		List<Point> points = new ArrayList<>(cursor.getCount());
+		try {
+			while (cursor.moveToNext()) {
+				points.add(new Point(cursor, 1));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		ContentValues cv = new ContentValues(1);
+		cv.put("state", OUTBOX_UPLOADING);
+		db.beginTransaction();
+		try {
+			for (Point point : points) {
+				db.update("outbox", cv, "uuid=?", toArray(point.getUuid()));
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+
+		return points;
+	}
+
+	/**
+	 * Schedule next upload attempt with exponential backoff
+	 *
+	 * @param retryInterval delay after first failure, doubled after each next failure
+	 * @param maxRetryInterval maximum delay
+	 */
+	public void markUploadFailed(Point point, String error, long now, long retryInterval, long maxRetryInterval) {
+		db.execSQL("UPDATE outbox SET state=?, attempts=attempts + 1, lastError=?, " +
+						"nextAttempt=? + min(?, ? << min(attempts, 30)) WHERE uuid=?;",
+				new Object[] { OUTBOX_PENDING, error, now, maxRetryInterval, retryInterval, point.getUuid() });
+	}
+
+	/**
+	 * Return items left uploading by interrupted synchronization to pending state.
+	 * Such points could be already created on server.
+	 */
+	public void resetOutbox() {
 		ContentValues cv = new ContentValues(1);
-		cv.put("uuid", oldPoint.getUuid());
-		cv.put("provider", Point.GETS_PROVIDER);
+		cv.put("state", OUTBOX_PENDING);
+		db.update("outbox", cv, "state=?", toArray(OUTBOX_UPLOADING));
+	}
 
-		db.update("point", cv, "uuid=?", toArray(oldPoint.getUuid()));
+	/**
+	 * @return earliest time of pending upload attempt {@link #loadOutbox} can return, -1 if there is none
+	 */
+	public long loadOutboxNextAttempt() {
+		// Items without point or category row are never loaded, so they must not schedule attempts
+		Cursor cursor = db.rawQuery("SELECT MIN(outbox.nextAttempt) " + FROM_OUTBOX_POINT_CATEGORY +
+				"WHERE outbox.state=?;", toArray(OUTBOX_PENDING));
+		try {
+			return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+		} finally {
+			cursor.close();
+		}
 	}
 
 	public void insertPoint(Point point) {
+		SQLiteStatement update = db.compileStatement(PointStatements.UPDATE_POINT);
+		SQLiteStatement insert = db.compileStatement(PointStatements.INSERT_POINT);
+		db.beginTransaction();
+		try {
+			TObjectLongMap<String> storedIds = new TObjectLongHashMap<>();
+			loadStoredPoints(Collections.singletonList(point), new TObjectLongHashMap<String>(), storedIds);
+
+			long id = writePoint(update, insert, point, getStoredDifficulty(point), storedIds);
+			indexPoints("point._id=?", toArray(id));
+
+			if (Point.LOCAL_PROVIDER.equals(point.getProvider())) {
+				ContentValues cv = new ContentValues(4);
+				cv.put("uuid", point.getUuid());
+				cv.put("state", OUTBOX_PENDING);
+				cv.put("attempts", 0);
+				cv.put("nextAttempt", 0);
+				db.insertWithOnConflict("outbox", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+			}
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			update.close();
+			insert.close();
+		}
+	}
+
+	/**
+	 * Update stored point by uuid in place, insert it only if no row was updated.
+	 * Existing row keeps its _id and no row is deleted.
+	 *
+	 * @param storedIds ids of stored points by uuid, loaded in same transaction
+	 * @return _id of point row
+	 */
+	private long writePoint(SQLiteStatement update, SQLiteStatement insert, Point point, int difficulty,
+							TObjectLongMap<String> storedIds) {
 		if (point == null) {
 			throw new IllegalArgumentException("Point can't be null");
 		}
 
-		ContentValues cv = new ContentValues(8);
-		cv.put("name", point.getName());
-		cv.put("description", point.getDescription());
-		cv.put("url", point.getUrl());
-		cv.put("lat", point.getLatE6());
-		cv.put("lon", point.getLonE6());
-		cv.put("categoryId", point.getCategory().getId());
-		cv.put("provider", point.getProvider());
-	//	int tmp = dis.getFactor(point.getCategory().getId(), point.getDifficulty());
-        if (dis != null) {
-            cv.put("difficulty", dis.getFactor(point.getCategory().getId(), point.getDifficulty()));
-        } else {
-            cv.put("difficulty", point.getDifficulty());
-        }
-		cv.put("private", point.isPrivate());
-
-		int affected = db.update("point", cv, "uuid=?", toArray(point.getUuid()));
-		if (affected == 0) {
-			cv.put("uuid", point.getUuid());
-			db.insert("point", null, cv);
+		bindPoint(update, point, difficulty);
+		if (update.executeUpdateDelete() > 0) {
+			return storedIds.get(point.getUuid());
 		}
+
+		bindPoint(insert, point, difficulty);
+		return insert.executeInsert();
+	}
+
+	/**
+	 * Bind columns in order of {@link PointStatements}
+	 */
+	private void bindPoint(SQLiteStatement statement, Point point, int difficulty) {
+		bindString(statement, 1, point.getRawName());
+		bindString(statement, 2, point.getDescription());
+		bindString(statement, 3, point.getUrl());
+		statement.bindLong(4, point.getLatE6());
+		statement.bindLong(5, point.getLonE6());
+		statement.bindLong(6, SpatialGrid.tileOf(point.getLatE6(), point.getLonE6(), SpatialGrid.POINT_CELL_E6));
+		statement.bindLong(7, point.getCategory().getId());
+		bindString(statement, 8, point.getProvider());
+		statement.bindLong(9, difficulty);
+		statement.bindLong(10, point.isPrivate() ? 1 : 0);
+		statement.bindLong(11, contentHash(point, difficulty));
+		bindString(statement, 12, LocalizedNames.resolve(point.getRawName(), language));
+		statement.bindLong(13, visibleCategories.contains(point.getCategory().getId()) ? 1 : 0);
+		statement.bindLong(14, point.getDifficulty());
+		bindString(statement, PointStatements.UUID_INDEX, point.getUuid());
 	}
 
-	public void setDisabilities(List<Disability> disabilities) {
+	private int getStoredDifficulty(Point point) {
+		return costModel.getCost(point.getCategory().getId(), point.getDifficulty());
+	}
+
+	/**
+	 * @return true if stored difficulty of some points changed
+	 */
+	public boolean setDisabilities(List<Disability> disabilities) {
+		boolean isDifficultyChanged;
 		try {
 			db.beginTransaction();
 
@@ -143,16 +681,24 @@ public class PointsDatabase implements Closeable {
 				insertDisability(disability);
 			}
 
+			updateVisibility();
+			isDifficultyChanged = updateCostModel();
 			db.setTransactionSuccessful();
 		} finally {
 			db.endTransaction();
 		}
+
+		return isDifficultyChanged;
 	}
 
 	private void insertDisability(Disability disability) {
-		ContentValues cv = new ContentValues(2);
+		ContentValues cv = new ContentValues(4);
 		cv.put("name", disability.getName());
 		cv.put("active", disability.isActive());
+		if (disability.isComplete()) {
+			cv.put("categories", joinInts(disability.getCategories()));
+			cv.put("factors", joinInts(disability.getFactors()));
+		}
 		//cv.put("active", disability.isActive());
 		long insertedId = db.insert("disability", null, cv);
 		int tmp = 0;
@@ -165,46 +711,419 @@ public class PointsDatabase implements Closeable {
 		}
 		if(disability != null && disability.isActive())
 		{
-			dis = disability;
-			Log.d(getClass().getSimpleName(), "Select disability: " + dis.getName().toString());
+			Log.d(getClass().getSimpleName(), "Select disability: " + disability.getName());
 		} else {
             Log.d(getClass().getSimpleName(), "Disability " + disability.getName() + " not selected");
         }
 	}
 
+	/**
+	 * @return validator of last complete download of category in area, null if there is none
+	 */
+	public String loadFetchValidator(int categoryId, String area) {
+		Cursor cursor = db.rawQuery("SELECT validator FROM fetch_validator WHERE categoryId=? AND area=?;",
+				toArray(categoryId, area));
+		try {
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * @param validator validator of response which points are all stored, null to forget validator
+	 */
+	public void storeFetchValidator(int categoryId, String area, String validator) {
+		if (validator == null) {
+			db.delete("fetch_validator", "categoryId=? AND area=?", toArray(categoryId, area));
+			return;
+		}
+
+		ContentValues cv = new ContentValues(3);
+		cv.put("categoryId", categoryId);
+		cv.put("area", area);
+		cv.put("validator", validator);
+		db.insertWithOnConflict("fetch_validator", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	/**
+	 * @return tiles from given list that were not updated for category since staleTime
+	 */
+	public int[] loadStaleTiles(int categoryId, int[] tiles, long staleTime) {
+		Cursor cursor = db.rawQuery("SELECT tile FROM tile_coverage WHERE categoryId=? AND updated>=? AND tile IN ("
+				+ joinInts(tiles) + ");", toArray(categoryId, staleTime));
+
+		TIntSet freshTiles = new TIntHashSet(cursor.getCount());
+		while (cursor.moveToNext()) {
+			freshTiles.add(cursor.getInt(0));
+		}
+		cursor.close();
+
+		TIntList staleTiles = new TIntArrayList(tiles.length);
+		for (int tile : tiles) {
+			if (!freshTiles.contains(tile)) {
+				staleTiles.add(tile);
+			}
+		}
+		return staleTiles.toArray();
+	}
+
+	public void markTilesUpdated(int categoryId, int[] tiles, long time) {
+		SQLiteStatement insert = db.compileStatement(
+				"INSERT OR REPLACE INTO tile_coverage (tile, categoryId, updated) VALUES (?, ?, ?);");
+
+		db.beginTransaction();
+		try {
+			for (int tile : tiles) {
+				insert.bindLong(1, tile);
+				insert.bindLong(2, categoryId);
+				insert.bindLong(3, time);
+				insert.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			insert.close();
+		}
+	}
+
+	/**
+	 * Record started refresh, record is kept until {@link #finishRefreshRun()}, so refresh interrupted
+	 * by cancellation or service kill can be resumed. Categories finished by interrupted refresh are
+	 * fresh in tile_coverage and next refresh skips them.
+	 */
+	public void startRefreshRun(GeoPoint center, long time) {
+		storeMetadata(METADATA_REFRESH_RUN, center.getLatitude() + " " + center.getLongitude() + " " + time);
+	}
+
+	public void finishRefreshRun() {
+		db.delete("metadata", "key=?", toArray(METADATA_REFRESH_RUN));
+	}
+
+	/**
+	 * @return center of unfinished refresh started after given time, null if there is no such refresh
+	 */
+	public GeoPoint loadUnfinishedRefreshRun(long sinceTime) {
+		String run = loadMetadata(METADATA_REFRESH_RUN);
+		if (run == null) {
+			return null;
+		}
+
+		String[] fields = run.split(" ");
+		if (fields.length != 3 || Long.parseLong(fields[2]) < sinceTime) {
+			// Tiles of older refresh are stale anyway, regular refresh is enough
+			finishRefreshRun();
+			return null;
+		}
+
+		return new GeoPoint(Double.parseDouble(fields[0]), Double.parseDouble(fields[1]));
+	}
+
+	/**
+	 * Set language of stored localized names. Names of all points and categories are
+	 * resolved again if they were stored in other language.
+	 *
+	 * @param language ISO 639 language code
+	 * @return true if stored names changed
+	 */
+	public boolean setLanguage(String language) {
+		if (language.equals(this.language)) {
+			return false;
+		}
+
+		this.language = language;
+		if (language.equals(loadMetadata(METADATA_LANGUAGE))) {
+			return false;
+		}
+
+		long startTime = System.nanoTime();
+		db.beginTransaction();
+		try {
+			int count = updateLocalNames("point") + updateLocalNames("category");
+			storeMetadata(METADATA_LANGUAGE, language);
+			rebuildSearchIndex();
+			db.setTransactionSuccessful();
+
+			Log.i(getClass().getSimpleName(), "Localized " + count + " names to '" + language + "' in "
+					+ (System.nanoTime() - startTime) / 1000000 + " ms");
+		} finally {
+			db.endTransaction();
+		}
+		return true;
+	}
+
+	private int updateLocalNames(String table) {
+		SQLiteStatement update = db.compileStatement("UPDATE " + table + " SET localName=? WHERE _id=?;");
+		Cursor cursor = db.rawQuery("SELECT _id, name FROM " + table + ";", null);
+		try {
+			while (cursor.moveToNext()) {
+				bindString(update, 1, LocalizedNames.resolve(cursor.getString(1), language));
+				update.bindLong(2, cursor.getLong(0));
+				update.execute();
+			}
+			return cursor.getCount();
+		} finally {
+			cursor.close();
+			update.close();
+		}
+	}
+
+	private String loadMetadata(String key) {
+		Cursor cursor = db.rawQuery("SELECT value FROM metadata WHERE key=?;", toArray(key));
+		try {
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private void storeMetadata(String key, String value) {
+		ContentValues cv = new ContentValues(2);
+		cv.put("key", key);
+		cv.put("value", value);
+		db.insertWithOnConflict("metadata", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
 	public Cursor loadCategories() {
-		return db.query("category", COLUMNS_CATEGORY, null, null, null, null, "name");
+		return db.query("category", COLUMNS_CATEGORY, null, null, null, null, "localName");
 	}
 
 	public Cursor loadPoints() {
-		return db.rawQuery(
-				"SELECT DISTINCT point._id, point.name, point.description, point.url, " +
-						"point.lat, point.lon, point.provider, point.uuid, point.difficulty, point.private, " +
-						"category._id, category.name, category.description, category.url, category.iconUrl, category.published, category.active " +
-
-						"FROM point INNER JOIN category ON point.categoryId = category._id " +
-						"INNER JOIN disability_category ON disability_category.categoryId = category._id " +
-						"INNER JOIN disability ON disability_category.disabilityId = disability._id " +
-						"WHERE disability.active = 1 and category.active=1", null);
+		return db.rawQuery(SELECT_POINT_CATEGORY + FROM_VISIBLE_POINTS, null);
 
 		//return db.query("point", COLUMNS_POINT, null, null, null, null, null);
 	}
 
+	/**
+	 * Load page of visible points with _id greater than afterId ordered by _id
+	 *
+	 * @param limit maximum number of points, negative for no limit
+	 */
+	public Cursor loadPoints(long afterId, int limit) {
+		return db.rawQuery(SELECT_POINT_CATEGORY + FROM_VISIBLE_POINTS + PAGE_SELECTION,
+				toArray(afterId, limit));
+	}
+
+	/**
+	 * Load visible points inside bounding box using point.tile index.
+	 * Box crossing 180th meridian is not supported.
+	 */
+	public Cursor loadPointsInBoundingBox(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+		return loadPointsInBoundingBox(minLatE6, minLonE6, maxLatE6, maxLonE6, Long.MIN_VALUE, -1);
+	}
+
+	/**
+	 * Load page of visible points inside bounding box ordered by _id
+	 *
+	 * @see #loadPoints(long, int)
+	 */
+	public Cursor loadPointsInBoundingBox(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6,
+										  long afterId, int limit) {
+		if (minLatE6 > maxLatE6 || minLonE6 > maxLonE6) {
+			throw new IllegalArgumentException("Invalid bounding box");
+		}
+
+		StringBuilder sql = new StringBuilder(SELECT_POINT_CATEGORY).append(FROM_VISIBLE_POINTS);
+		List<String> args = new ArrayList<>();
+
+		sql.append("AND ");
+		appendBoxSelection(sql, args, minLatE6, minLonE6, maxLatE6, maxLonE6);
+
+		sql.append(PAGE_SELECTION);
+		args.add(String.valueOf(afterId));
+		args.add(String.valueOf(limit));
+
+		return db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+	}
+
+	public Cursor searchPoints(String text, int limit) {
+		return searchPoints(text, false, 0, 0, 0, 0, limit);
+	}
+
+	/**
+	 * Search visible points inside bounding box
+	 */
+	public Cursor searchPoints(String text, int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, int limit) {
+		return searchPoints(text, true, minLatE6, minLonE6, maxLatE6, maxLonE6, limit);
+	}
+
+	/**
+	 * Search visible points which name, description or category name contain words starting with
+	 * words of text. Points matched by name go first, then points are ordered by name.
+	 */
+	private Cursor searchPoints(String text, boolean inBox, int minLatE6, int minLonE6, int maxLatE6, int maxLonE6,
+								int limit) {
+		String query = prefixSearchQuery(text, null);
+		if (query == null) {
+			return db.rawQuery(SELECT_POINT_CATEGORY + FROM_VISIBLE_POINTS + "AND 0;", null);
+		}
+
+		StringBuilder sql = new StringBuilder(SELECT_POINT_CATEGORY).append(FROM_VISIBLE_POINTS);
+		List<String> args = new ArrayList<>();
+
+		sql.append("AND point._id IN (SELECT docid FROM point_search WHERE point_search MATCH ?) ");
+		args.add(query);
+
+		if (inBox) {
+			if (minLatE6 > maxLatE6 || minLonE6 > maxLonE6) {
+				throw new IllegalArgumentException("Invalid bounding box");
+			}
+
+			sql.append("AND ");
+			appendBoxSelection(sql, args, minLatE6, minLonE6, maxLatE6, maxLonE6);
+		}
+
+		sql.append("ORDER BY point._id IN (SELECT docid FROM point_search WHERE point_search MATCH ?) DESC, " +
+				"point.localName LIMIT ?;");
+		args.add(prefixSearchQuery(text, "name"));
+		args.add(String.valueOf(limit));
+
+		return db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+	}
+
+	/**
+	 * Add all visible points to snapshot
+	 */
+	public void loadSnapshotRows(PointsSnapshot.Builder builder) {
+		loadSnapshotRows(builder, "1", null);
+	}
+
+	/**
+	 * Add visible points of categories to snapshot
+	 */
+	public void loadSnapshotRows(PointsSnapshot.Builder builder, int[] categoryIds) {
+		loadSnapshotRows(builder, "categoryId IN (" + joinInts(categoryIds) + ")", null);
+	}
+
+	/**
+	 * Add visible points with given uuids to snapshot
+	 */
+	public void loadSnapshotRows(PointsSnapshot.Builder builder, Collection<String> uuids) {
+		List<String> uuidList = new ArrayList<>(uuids);
+		for (int from = 0; from < uuidList.size(); from += MAX_QUERY_ARGS) {
+			int to = Math.min(uuidList.size(), from + MAX_QUERY_ARGS);
+
+			StringBuilder selection = new StringBuilder("uuid IN (");
+			for (int i = from; i < to; i++) {
+				selection.append(i == from ? "?" : ",?");
+			}
+			selection.append(")");
+
+			List<String> args = uuidList.subList(from, to);
+			loadSnapshotRows(builder, selection.toString(), args.toArray(new String[args.size()]));
+		}
+	}
+
+	private void loadSnapshotRows(PointsSnapshot.Builder builder, String selection, String[] args) {
+		Cursor cursor = db.rawQuery("SELECT uuid, lat, lon, categoryId, rating FROM point " +
+				"WHERE visible = 1 AND " + selection + ";", args);
+		try {
+			while (cursor.moveToNext()) {
+				builder.add(cursor.getString(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3), cursor.getInt(4));
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Load k visible points nearest to center ordered by distance. Last column of cursor
+	 * is squared projected distance in microdegrees of latitude.
+	 *
+	 * Search radius grows from {@link #NEAREST_START_RADIUS} until circle contains k points
+	 * or all visible points of categories, so usually only few tiles around center are read.
+	 *
+	 * @param maxRadius maximum distance in meters, 0 for no limit
+	 * @param categoryIds categories to search in or null for all categories
+	 */
+	public Cursor loadNearestPoints(int latE6, int lonE6, int k, int maxRadius, int[] categoryIds) {
+		if (maxRadius <= 0) {
+			maxRadius = NEAREST_MAX_RADIUS;
+		}
+
+		// With fewer than k candidates larger circles can't find more than all of them
+		int expected = (int) Math.min(k, countVisiblePoints(categoryIds));
+
+		double lonScale = SpatialGrid.lonScale(latE6 / 1e6);
+		int radius = Math.min(NEAREST_START_RADIUS, maxRadius);
+		while (true) {
+			boolean isLast = radius >= maxRadius;
+			Cursor cursor = queryNearestPoints(latE6, lonE6, k, radius, lonScale, categoryIds);
+
+			if (isLast || cursor.getCount() >= expected) {
+				return cursor;
+			}
+
+			cursor.close();
+			radius = (int) Math.min((long) radius * 2, maxRadius);
+		}
+	}
+
+	private long countVisiblePoints(int[] categoryIds) {
+		StringBuilder sql = new StringBuilder("SELECT COUNT(*) ").append(FROM_VISIBLE_POINTS);
+		if (categoryIds != null) {
+			sql.append("AND point.categoryId IN (").append(joinInts(categoryIds)).append(") ");
+		}
+
+		Cursor cursor = db.rawQuery(sql.toString(), null);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private Cursor queryNearestPoints(int latE6, int lonE6, int k, int radius, double lonScale, int[] categoryIds) {
+		int dLatE6 = (int) (radius / SpatialGrid.METERS_PER_DEGREE * 1e6);
+		int dLonE6 = (int) Math.min(radius / (SpatialGrid.METERS_PER_DEGREE * lonScale) * 1e6, 360000000);
+
+		// Projected distance scaled to microdegrees of latitude
+		String distance = "((point.lat - " + latE6 + ") * (point.lat - " + latE6 + ") + "
+				+ "(point.lon - " + lonE6 + ") * (point.lon - " + lonE6 + ") * " + (lonScale * lonScale) + ")";
+
+		StringBuilder sql = new StringBuilder(SELECT_POINT_CATEGORY).append(", ").append(distance)
+				.append(" AS distance ").append(FROM_VISIBLE_POINTS);
+		List<String> args = new ArrayList<>();
+
+		sql.append("AND ");
+		appendBoxSelection(sql, args, Math.max(latE6 - dLatE6, -90000000), Math.max(lonE6 - dLonE6, -180000000),
+				Math.min(latE6 + dLatE6, 90000000), Math.min(lonE6 + dLonE6, 180000000));
+
+		if (categoryIds != null) {
+			sql.append("AND point.categoryId IN (").append(joinInts(categoryIds)).append(") ");
+		}
+
+		// Points in box corners can be farther than points just outside box, so only circle
+		// inscribed into box is used. Distance is inlined: bound text value doesn't compare as number
+		sql.append("AND distance <= ").append(squaredLatE6(radius)).append(" ORDER BY distance LIMIT ?;");
+		args.add(String.valueOf(k));
+
+		return db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+	}
+
+	/**
+	 * @return squared distance in microdegrees of latitude
+	 */
+	private static double squaredLatE6(int meters) {
+		double latE6 = meters / SpatialGrid.METERS_PER_DEGREE * 1e6;
+		return latE6 * latE6;
+	}
+
 	public Cursor loadPrivatePoints() {
-		return db.rawQuery(
-				"SELECT DISTINCT point._id, point.name, point.description, point.url, " +
-						"point.lat, point.lon, point.provider, point.uuid, point.difficulty, point.private, " +
-						"category._id, category.name, category.description, category.url, category.iconUrl, category.published, category.active " +
+		return loadPrivatePoints(Long.MIN_VALUE, -1);
+	}
 
+	/**
+	 * @see #loadPoints(long, int)
+	 */
+	public Cursor loadPrivatePoints(long afterId, int limit) {
+		return db.rawQuery(SELECT_POINT_CATEGORY +
 						"FROM point INNER JOIN category ON point.categoryId = category._id " +
-						"WHERE point.private != 0;", null);
+						"WHERE point.private != 0 " + PAGE_SELECTION, toArray(afterId, limit));
 	}
 
 	public Cursor loadNotSynchronizedPoints() {
-		return db.rawQuery("SELECT DISTINCT point._id, point.name, point.description, point.url, " +
-				"point.lat, point.lon, point.provider, point.uuid, point.difficulty, point.private, " +
-				"category._id, category.name, category.description, category.url, category.iconUrl, category.published, category.active " +
-
+		return db.rawQuery(SELECT_POINT_CATEGORY +
 				"FROM point INNER JOIN category ON point.categoryId = category._id " +
 				"WHERE point.provider=?", toArray(Point.LOCAL_PROVIDER));
 	}
@@ -218,22 +1137,223 @@ public class PointsDatabase implements Closeable {
 			throw new IllegalArgumentException("Trying change state of non stored disability");
 		}
 
-		ContentValues cv = new ContentValues(1);
-		cv.put("active", isActive);
-		db.update("disability", cv, "_id=?", toArray(disability.getDbId()));
+		db.beginTransaction();
+		try {
+			ContentValues cv = new ContentValues(1);
+			cv.put("active", isActive);
+			db.update("disability", cv, "_id=?", toArray(disability.getDbId()));
+			updateVisibility();
+			updateCostModel();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * @return costs of obstacles for all active disabilities
+	 */
+	public CostModel getCostModel() {
+		return costModel;
+	}
+
+	/**
+	 * Set how costs of several active disabilities are combined
+	 *
+	 * @param combine {@link CostModel#COMBINE_MAX} or {@link CostModel#COMBINE_SUM}
+	 */
+	public void setCostCombine(int combine) {
+		if (combine != CostModel.COMBINE_MAX && combine != CostModel.COMBINE_SUM) {
+			throw new IllegalArgumentException("Unknown cost combine mode " + combine);
+		}
+
+		db.beginTransaction();
+		try {
+			storeMetadata(METADATA_COST_COMBINE, String.valueOf(combine));
+			updateCostModel();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Compile cost model from stored disabilities and rewrite stored difficulty of points
+	 * scored by previous model. Must be called in transaction.
+	 *
+	 * @return true if stored difficulty of some points changed
+	 */
+	private boolean updateCostModel() {
+		CostModel costModel = compileCostModel();
+		SQLiteStatement update = db.compileStatement("UPDATE point SET difficulty=? WHERE _id=?;");
+		int updated = 0;
+
+		// Point hash still covers old difficulty, so such point is rewritten once by next refresh
+		Cursor cursor = db.rawQuery("SELECT _id, categoryId, rating, difficulty FROM point;", null);
+		try {
+			while (cursor.moveToNext()) {
+				int difficulty = costModel.getCost(cursor.getInt(1), cursor.getInt(2));
+				if (difficulty != cursor.getInt(3)) {
+					update.bindLong(1, difficulty);
+					update.bindLong(2, cursor.getLong(0));
+					update.executeUpdateDelete();
+					updated++;
+				}
+			}
+		} finally {
+			cursor.close();
+			update.close();
+		}
+
+		this.costModel = costModel;
+		return updated > 0;
+	}
+
+	private CostModel compileCostModel() {
+		String combine = loadMetadata(METADATA_COST_COMBINE);
+		List<Disability> disabilities = new ArrayList<>();
+
+		Cursor cursor = db.query("disability", COLUMNS_DISABILITY, "active=1", null, null, null, "_id");
+		try {
+			while (cursor.moveToNext()) {
+				Disability disability = new Disability(cursor);
+				if (disability.isComplete()) {
+					disabilities.add(disability);
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+
+		return CostModel.compile(disabilities, combine == null ? CostModel.COMBINE_MAX : Integer.parseInt(combine));
+	}
+
+	/**
+	 * Load visible points within width of route segments. Each segment is queried by its own
+	 * bounding box through point.tile index, point near several segments is reported once
+	 * for nearest segment.
+	 *
+	 * @param width maximum distance from route in meters
+	 * @return obstacles ordered by segment index and distance to route
+	 */
+	public List<RouteObstacle> loadRouteObstacles(List<GeoPoint> route, int width) {
+		Map<String, RouteObstacle> obstacles = new HashMap<>();
+		CostModel costModel = this.costModel;
+		double maxDistanceSquared = (double) width * width;
+
+		int segments = Math.max(route.size() - 1, 1);
+		for (int i = 0; i < segments && !route.isEmpty(); i++) {
+			GeoPoint a = route.get(i);
+			GeoPoint b = route.get(Math.min(i + 1, route.size() - 1));
+			int latE6a = (int) (a.getLatitude() * 1e6);
+			int lonE6a = (int) (a.getLongitude() * 1e6);
+			int latE6b = (int) (b.getLatitude() * 1e6);
+			int lonE6b = (int) (b.getLongitude() * 1e6);
+
+			double lonScale = SpatialGrid.lonScale((a.getLatitude() + b.getLatitude()) / 2);
+			int dLatE6 = (int) (width / SpatialGrid.METERS_PER_DEGREE * 1e6);
+			int dLonE6 = (int) (width / (SpatialGrid.METERS_PER_DEGREE * lonScale) * 1e6);
+
+			StringBuilder sql = new StringBuilder("SELECT uuid, lat, lon, categoryId, rating FROM point " +
+					"WHERE visible = 1 AND ");
+			List<String> args = new ArrayList<>();
+			appendBoxSelection(sql, args, Math.min(latE6a, latE6b) - dLatE6, Math.min(lonE6a, lonE6b) - dLonE6,
+					Math.max(latE6a, latE6b) + dLatE6, Math.max(lonE6a, lonE6b) + dLonE6);
+
+			Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[args.size()]));
+			while (cursor.moveToNext()) {
+				String uuid = cursor.getString(0);
+				int latE6 = cursor.getInt(1);
+				int lonE6 = cursor.getInt(2);
+
+				double distanceSquared = SpatialGrid.projectedSegmentDistanceSquared(latE6, lonE6,
+						latE6a, lonE6a, latE6b, lonE6b, lonScale);
+				RouteObstacle existing = obstacles.get(uuid);
+				if (distanceSquared > maxDistanceSquared
+						|| existing != null && existing.getDistance() * existing.getDistance() <= distanceSquared) {
+					continue;
+				}
+
+				int categoryId = cursor.getInt(3);
+				int rating = cursor.getInt(4);
+				int cost = costModel.getCost(categoryId, rating);
+				obstacles.put(uuid, new RouteObstacle(uuid, latE6, lonE6, categoryId, rating, cost, i,
+						Math.sqrt(distanceSquared)));
+			}
+			cursor.close();
+		}
+
+		List<RouteObstacle> sorted = new ArrayList<>(obstacles.values());
+		Collections.sort(sorted, new Comparator<RouteObstacle>() {
+			@Override
+			public int compare(RouteObstacle lhs, RouteObstacle rhs) {
+				if (lhs.getSegmentIndex() != rhs.getSegmentIndex()) {
+					return lhs.getSegmentIndex() < rhs.getSegmentIndex() ? -1 : 1;
+				}
+				return Double.compare(lhs.getDistance(), rhs.getDistance());
+			}
+		});
+		return sorted;
 	}
 
     public void setCategoryState(Category category, boolean isActive) {
-        ContentValues cv = new ContentValues(1);
-        cv.put("active", isActive);
-        db.update("category", cv, "_id=?", toArray(category.getId()));
+		db.beginTransaction();
+		try {
+			ContentValues cv = new ContentValues(1);
+			cv.put("active", isActive);
+			db.update("category", cv, "_id=?", toArray(category.getId()));
+			updateVisibility();
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
     }
 
-    private boolean isCategoryExists(Category category) {
-		Cursor cursor = db.query("category", COLUMNS_ID, "_id=?", toArray(category.getId()), null, null, null);
-		boolean isExists = cursor.moveToFirst();
+	/**
+	 * Recompute visibility of categories: category is visible if it is active and belongs
+	 * to active disability. Points are updated only for categories which visibility changed.
+	 *
+	 * @return ids of categories which visibility changed
+	 */
+	private int[] updateVisibility() {
+		TIntSet visible = new TIntHashSet();
+		Cursor cursor = db.rawQuery("SELECT DISTINCT category._id FROM category " +
+				"INNER JOIN disability_category ON disability_category.categoryId = category._id " +
+				"INNER JOIN disability ON disability_category.disabilityId = disability._id " +
+				"WHERE disability.active = 1 AND category.active = 1;", null);
+		while (cursor.moveToNext()) {
+			visible.add(cursor.getInt(0));
+		}
 		cursor.close();
-		return isExists;
+
+		TIntList changed = new TIntArrayList();
+		cursor = db.rawQuery("SELECT _id, visible FROM category;", null);
+		while (cursor.moveToNext()) {
+			if (visible.contains(cursor.getInt(0)) != (cursor.getInt(1) != 0)) {
+				changed.add(cursor.getInt(0));
+			}
+		}
+		cursor.close();
+
+		if (!changed.isEmpty()) {
+			db.beginTransaction();
+			try {
+				for (int i = 0; i < changed.size(); i++) {
+					int categoryId = changed.get(i);
+					ContentValues cv = new ContentValues(1);
+					cv.put("visible", visible.contains(categoryId));
+					db.update("category", cv, "_id=?", toArray(categoryId));
+					db.update("point", cv, "categoryId=?", toArray(categoryId));
+				}
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
+			Log.v(getClass().getSimpleName(), "Visibility of " + changed.size() + " categories changed");
+		}
+
+		visibleCategories = visible;
+		return changed.toArray();
 	}
 
 	private boolean isPointExists(Point point) {
@@ -243,6 +1363,55 @@ public class PointsDatabase implements Closeable {
 		return isExists;
 	}
 
+	private static void appendBoxSelection(StringBuilder sql, List<String> args,
+										   int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+		int minLatIndex = SpatialGrid.latIndex(minLatE6, SpatialGrid.POINT_CELL_E6);
+		int maxLatIndex = SpatialGrid.latIndex(maxLatE6, SpatialGrid.POINT_CELL_E6);
+		int minLonIndex = SpatialGrid.lonIndex(minLonE6, SpatialGrid.POINT_CELL_E6);
+		int maxLonIndex = SpatialGrid.lonIndex(maxLonE6, SpatialGrid.POINT_CELL_E6);
+
+		sql.append("(");
+		if (maxLatIndex - minLatIndex < MAX_TILE_RANGES) {
+			for (int latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+				if (latIndex != minLatIndex) {
+					sql.append(" OR ");
+				}
+				sql.append("point.tile BETWEEN ? AND ?");
+				args.add(String.valueOf(SpatialGrid.tile(latIndex, minLonIndex)));
+				args.add(String.valueOf(SpatialGrid.tile(latIndex, maxLonIndex)));
+			}
+		} else {
+			sql.append("point.tile BETWEEN ? AND ?");
+			args.add(String.valueOf(SpatialGrid.tile(minLatIndex, minLonIndex)));
+			args.add(String.valueOf(SpatialGrid.tile(maxLatIndex, maxLonIndex)));
+		}
+		sql.append(") ");
+
+		sql.append("AND point.lat BETWEEN ? AND ? AND point.lon BETWEEN ? AND ? ");
+		args.add(String.valueOf(minLatE6));
+		args.add(String.valueOf(maxLatE6));
+		args.add(String.valueOf(minLonE6));
+		args.add(String.valueOf(maxLonE6));
+	}
+
+	private static void bindString(SQLiteStatement statement, int index, String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+
+	private static String joinInts(int[] values) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(values[i]);
+		}
+		return builder.toString();
+	}
+
 	private static String[] toArray(Object... objects) {
 		String[] arr = new String[objects.length];
 		int c = 0;
@@ -290,6 +1459,59 @@ public class PointsDatabase implements Closeable {
 		public static final String V9_TABLE_CATEGORY_PUBLISHED = "ALTER TABLE category ADD COLUMN published INTEGER DEFAULT 0;";
         public static final String V9_TABLE_CATEGORY_ACTIVE = "ALTER TABLE category ADD COLUMN active INTEGER DEFAULT 0;";
 
+		public static final String V10_TABLE_POINT_TILE = "ALTER TABLE point ADD COLUMN tile INTEGER;";
+		public static final String V10_UPDATE_POINT_TILE = "UPDATE point SET tile = "
+				+ SpatialGrid.tileSqlExpression("lat", "lon", SpatialGrid.POINT_CELL_E6) + ";";
+		public static final String V10_INDEX_POINT_TILE = "CREATE INDEX point_tile_index ON point (tile, lat, lon);";
+
+		public static final String V11_TABLE_TILE_COVERAGE = "CREATE TABLE tile_coverage " +
+				"(tile INTEGER, " +
+				"categoryId INTEGER, " +
+				"updated INTEGER, " +
+				"PRIMARY KEY (tile, categoryId));";
+
+		public static final String V12_TABLE_POINT_HASH = "ALTER TABLE point ADD COLUMN hash INTEGER;";
+
+		public static final String V13_TABLE_POINT_LOCAL_NAME = "ALTER TABLE point ADD COLUMN localName TEXT;";
+		public static final String V13_TABLE_CATEGORY_LOCAL_NAME = "ALTER TABLE category ADD COLUMN localName TEXT;";
+		public static final String V13_INDEX_CATEGORY_LOCAL_NAME = "CREATE INDEX category_local_name_index ON category (localName);";
+		public static final String V13_TABLE_METADATA = "CREATE TABLE metadata " +
+				"(key TEXT PRIMARY KEY, " +
+				"value TEXT);";
+
+		// Simple tokenizer is the only one available on all supported Android versions
+		public static final String V14_TABLE_POINT_SEARCH = "CREATE VIRTUAL TABLE point_search " +
+				"USING fts4(name, description, category);";
+
+		public static final String V15_TABLE_POINT_VISIBLE = "ALTER TABLE point ADD COLUMN visible INTEGER DEFAULT 0;";
+		public static final String V15_TABLE_CATEGORY_VISIBLE = "ALTER TABLE category ADD COLUMN visible INTEGER DEFAULT 0;";
+		public static final String V15_INDEX_POINT_VISIBLE = "CREATE INDEX point_visible_index ON point (visible, tile, lat, lon);";
+		public static final String V15_INDEX_POINT_CATEGORY = "CREATE INDEX point_category_index ON point (categoryId);";
+
+		public static final String V16_TABLE_OUTBOX = "CREATE TABLE outbox " +
+				"(uuid TEXT PRIMARY KEY, " +
+				"state INTEGER, " +
+				"attempts INTEGER, " +
+				"nextAttempt INTEGER, " +
+				"lastError TEXT);";
+		public static final String V16_FILL_OUTBOX = "INSERT INTO outbox (uuid, state, attempts, nextAttempt) " +
+				"SELECT uuid, 0, 0, 0 FROM point WHERE provider='" + Point.LOCAL_PROVIDER + "';";
+
+		public static final String V17_TABLE_POINT_RATING = "ALTER TABLE point ADD COLUMN rating INTEGER;";
+		// Older rows stored only difficulty already mapped by disability factors, refreshed points get real rating
+		public static final String V17_UPDATE_POINT_RATING = "UPDATE point SET rating = difficulty;";
+		public static final String V17_TABLE_DISABILITY_CATEGORIES = "ALTER TABLE disability ADD COLUMN categories TEXT;";
+		public static final String V17_TABLE_DISABILITY_FACTORS = "ALTER TABLE disability ADD COLUMN factors TEXT;";
+
+		// Server validators of last points response per category and fetched circle
+		public static final String V18_TABLE_FETCH_VALIDATOR = "CREATE TABLE fetch_validator " +
+				"(categoryId INTEGER, " +
+				"area TEXT, " +
+				"validator TEXT, " +
+				"PRIMARY KEY (categoryId, area));";
+
+		private boolean isSearchIndexCreated;
+
 		public Helper(Context context) {
 			super(context, "points-db", null, VERSION);
 		}
@@ -327,6 +1549,49 @@ public class PointsDatabase implements Closeable {
 				db.execSQL(V9_TABLE_POINT);
 				db.execSQL(V9_TABLE_CATEGORY_PUBLISHED);
                 db.execSQL(V9_TABLE_CATEGORY_ACTIVE);
+
+			case 9:
+				db.execSQL(V10_TABLE_POINT_TILE);
+				db.execSQL(V10_UPDATE_POINT_TILE);
+				db.execSQL(V10_INDEX_POINT_TILE);
+
+			case 10:
+				db.execSQL(V11_TABLE_TILE_COVERAGE);
+
+			case 11:
+				db.execSQL(V12_TABLE_POINT_HASH);
+
+			case 12:
+				// localName columns are filled by PointsDatabase.setLanguage
+				db.execSQL(V13_TABLE_POINT_LOCAL_NAME);
+				db.execSQL(V13_TABLE_CATEGORY_LOCAL_NAME);
+				db.execSQL(V13_INDEX_CATEGORY_LOCAL_NAME);
+				db.execSQL(V13_TABLE_METADATA);
+
+			case 13:
+				// Filled by PointsDatabase after database opened
+				db.execSQL(V14_TABLE_POINT_SEARCH);
+				isSearchIndexCreated = true;
+
+			case 14:
+				// Filled by PointsDatabase.updateVisibility
+				db.execSQL(V15_TABLE_POINT_VISIBLE);
+				db.execSQL(V15_TABLE_CATEGORY_VISIBLE);
+				db.execSQL(V15_INDEX_POINT_VISIBLE);
+				db.execSQL(V15_INDEX_POINT_CATEGORY);
+
+			case 15:
+				db.execSQL(V16_TABLE_OUTBOX);
+				db.execSQL(V16_FILL_OUTBOX);
+
+			case 16:
+				db.execSQL(V17_TABLE_POINT_RATING);
+				db.execSQL(V17_UPDATE_POINT_RATING);
+				db.execSQL(V17_TABLE_DISABILITY_CATEGORIES);
+				db.execSQL(V17_TABLE_DISABILITY_FACTORS);
+
+			case 17:
+				db.execSQL(V18_TABLE_FETCH_VALIDATOR);
 			}
 			Log.i(getClass().getSimpleName(), "Upgrade database from " + oldVersion + " to " + newVersion);
 		}
@@ -5,12 +5,28 @@ import org.osmdroid.util.GeoPoint;
 import java.util.List;
 
 public interface PointsProvider {
+	int NOT_MODIFIED = -1;
+
+	// Radius in meters of points kept around user, also used by loadPoints without explicit radius
+	int DEFAULT_RADIUS = 4000;
+
 	String getProviderName();
 
 	List<Disability> loadDisabilities() throws PointsException;
 	List<Category> loadCategories() throws PointsException;
 	List<Point> loadPoints(Category category, GeoPoint geoPoint) throws PointsException;
 
+	/**
+	 * Stream points within radius into sink as they are parsed.
+	 * {@link TimedPointsSink} also receives timing of response,
+	 * {@link ValidatedPointsSink} receives validator of successful response.
+	 *
+	 * @param validator validator of earlier response to the same request, null to always download
+	 * @return number of points passed to sink or {@link #NOT_MODIFIED} if points didn't change since
+	 * response validator was received for
+	 */
+	int loadPoints(Category category, GeoPoint geoPoint, int radius, String validator, PointsSink sink) throws PointsException;
+
 	/**
 	 * @return uuid of new point
 	 */
@@ -0,0 +1,35 @@
+package org.fruct.oss.gets;
+
+import android.database.Cursor;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Request of points joined with category starting from column 1.
+ * Rows mapped by one request share single Category instance per category id.
+ */
+abstract class PointsRequest implements Request<Point> {
+	private static final int POINT_OFFSET = 1;
+
+	private final TIntObjectMap<Category> categories = new TIntObjectHashMap<>();
+
+	@Override
+	public Point cursorToObject(Cursor cursor) {
+		int categoryOffset = POINT_OFFSET + Point.CURSOR_CATEGORY_OFFSET;
+		int categoryId = cursor.getInt(categoryOffset);
+
+		Category category = categories.get(categoryId);
+		if (category == null) {
+			category = new Category(cursor, categoryOffset);
+			categories.put(categoryId, category);
+		}
+
+		return new Point(cursor, POINT_OFFSET, category);
+	}
+
+	@Override
+	public int getId(Point point) {
+		throw new UnsupportedOperationException("Point doesn't has public id");
+	}
+}
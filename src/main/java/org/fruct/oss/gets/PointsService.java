@@ -1,9 +1,12 @@
 package org.fruct.oss.gets;
 
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.location.Location;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -18,11 +21,25 @@ import android.util.Log;
 import org.fruct.oss.gets.annotations.Blocking;
 import org.fruct.oss.gets.api.GetsProvider;
 import org.fruct.oss.gets.utils.Function;
+import org.fruct.oss.gets.utils.HttpTransport;
+import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -31,28 +48,86 @@ import java.util.concurrent.Future;
 public class PointsService extends Service implements SharedPreferences.OnSharedPreferenceChangeListener {
 
 	public static final int POINT_UPDATE_INTERVAL = 60 * 3600;
-	public static final int POINT_UPDATE_DISTANCE = 1000;
+	// Points are refreshed after user moves a quarter of radius they were loaded within
+	public static final int POINT_UPDATE_DISTANCE = PointsProvider.DEFAULT_RADIUS / 4;
+
+	// Age after which points of coverage tile are downloaded again
+	public static final long TILE_UPDATE_INTERVAL = 60 * 60 * 1000;
+
+	// Maximum number of categories downloaded simultaneously
+	public static final int POINT_FETCH_THREADS = 4;
+
+	// Points committed to database in one transaction during streaming refresh
+	public static final int POINT_CHUNK_SIZE = 200;
+	private static final int POINT_CHUNK_QUEUE_SIZE = POINT_FETCH_THREADS * 2;
+
+	// Maximum number of concurrent point uploads
+	public static final int UPLOAD_WINDOW = 4;
+
+	// Outbox items loaded at once for upload
+	private static final int UPLOAD_BATCH_SIZE = 100;
+
+	// Delay after first failed upload of point, doubled after each next failure
+	public static final long UPLOAD_RETRY_INTERVAL = 30 * 1000;
+	public static final long UPLOAD_MAX_RETRY_INTERVAL = 60 * 60 * 1000;
+
+	// Changes during this time after first one are merged into single notification
+	public static final long CHANGE_NOTIFY_DELAY = 300;
+
+	// Snapshot is written to disk at most once per this time after first change
+	private static final long SNAPSHOT_PERSIST_DELAY = 5000;
+
+	// Maximum number of points returned by search request
+	public static final int SEARCH_LIMIT = 100;
 
 	public static final String PREF_GETS_TOKEN = "pref-gets-token";
     public static final String PREF_LAST_POINTS_UPDATE_TIMESTAMP = "pref-last-points-update-timestamp";
 	public static final String PREF_LAST_UPDATE = "pref_last_update";
 
+	private static final String ICONS_CACHE_DIR = "category-icons";
+	private static final String RESPONSE_CACHE_DIR = "gets-responses";
+	private static final String SNAPSHOT_FILE = "points-snapshot";
+
 	private final Binder binder = new Binder();
 
 	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final ExecutorService fetchExecutor = Executors.newFixedThreadPool(POINT_FETCH_THREADS);
+
+	// Builds and updates snapshot, so reads don't wait for refresh on executor
+	private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor();
+	private volatile PointsSnapshot snapshot;
+
+	// Accessed only on snapshotExecutor
+	private boolean isSnapshotPersistScheduled;
 
 	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+	private final List<MetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
+
+	private final Metrics metrics = new Metrics();
+	private volatile RefreshMetrics lastRefreshMetrics;
+
+	private final Object changeLock = new Object();
+	private PointsChange pendingChange;
+
+	// Accessed only from main thread
+	private boolean isSynchronizing;
+	private boolean isSynchronizationRequested;
 
 	private Handler handler;
 	private SharedPreferences pref;
 
 	private PointsDatabase database;
+	private HttpTransport transport;
 
 	// Tasks
 	private Future<?> refreshProvidersTask;
 	private Future<?> synchronizationTask;
 
-	private Location lastLocation;
+	private RefreshScheduler refreshScheduler;
+
+	// Identifies running refresh, accessed only from main thread
+	private Object refreshToken;
 
     private String serverUrl;
 
@@ -70,10 +145,31 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		database = new PointsDatabase(this);
 		handler = new Handler(Looper.getMainLooper());
 
+		// Queued first, so points are written only after names and visibility are current
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (database.updateDerivedData()) {
+					notifyDataUpdated(false);
+					notifyPointsChanged(PointsChange.full());
+				}
+			}
+		});
+
+		transport = new HttpTransport(new File(getCacheDir(), RESPONSE_CACHE_DIR));
+		IconCache.getInstance().setDiskCacheDir(new File(getCacheDir(), ICONS_CACHE_DIR));
+
 		pref = PreferenceManager.getDefaultSharedPreferences(this);
 		pref.registerOnSharedPreferenceChangeListener(this);
 
+		refreshScheduler = new RefreshScheduler(handler, refreshCallback, POINT_UPDATE_INTERVAL, POINT_UPDATE_DISTANCE);
+		if (pref.contains(PREF_LAST_POINTS_UPDATE_TIMESTAMP)) {
+			refreshScheduler.setLastRefresh(pref.getLong(PREF_LAST_POINTS_UPDATE_TIMESTAMP, -1),
+					pref.getFloat(PREF_LAST_UPDATE + "_lat", 0.0f), pref.getFloat(PREF_LAST_UPDATE + "_lon", 0.0f));
+		}
+
 		synchronize();
+		resumeRefresh();
 
 		Log.i(getClass().getSimpleName(), "created");
 	}
@@ -93,6 +189,10 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 			synchronizationTask.cancel(true);
 
 		pref.unregisterOnSharedPreferenceChangeListener(this);
+		handler.removeCallbacks(dispatchChangeRunnable);
+		handler.removeCallbacks(persistSnapshotRunnable);
+		handler.removeCallbacks(synchronizeRunnable);
+		refreshScheduler.stop();
 
 		executor.execute(new Runnable() {
 			@Override
@@ -101,11 +201,29 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 			}
 		});
 		executor.shutdownNow();
+		fetchExecutor.shutdownNow();
+		snapshotExecutor.shutdownNow();
 
 		Log.i(getClass().getSimpleName(), "destroyed");
 		super.onDestroy();
 	}
 
+	@Override
+	public void onConfigurationChanged(Configuration newConfig) {
+		super.onConfigurationChanged(newConfig);
+
+		final String language = Locale.getDefault().getLanguage();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (database.setLanguage(language)) {
+					notifyDataUpdated(false);
+					notifyPointsChanged(PointsChange.full());
+				}
+			}
+		});
+	}
+
 	@Override
 	public boolean onUnbind(Intent intent) {
 		handler.postDelayed(stopRunnable, 10000);
@@ -146,70 +264,103 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		}
 	}
 
+	/**
+	 * Check distance and time since last refresh and start refresh if needed
+	 */
 	public void refreshIfNeed() {
-		if (lastLocation == null) {
-			return;
-		}
-
-		ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
-		NetworkInfo networkInfo = cm.getActiveNetworkInfo();
-
-		if (networkInfo == null || !networkInfo.isConnected()) {
-			return;
-		}
-
-		SharedPreferences appPref = PreferenceManager.getDefaultSharedPreferences(this);
-
-		long lastUpdateTime = appPref.getLong(PREF_LAST_POINTS_UPDATE_TIMESTAMP, -1);
-		long currentTime = System.currentTimeMillis();
-
-		GeoPoint currentLocation = new GeoPoint(lastLocation);
-        float lat = pref.getFloat(PREF_LAST_UPDATE + "_lat", 0.0f);
-        float lon = pref.getFloat(PREF_LAST_UPDATE + "_lon", 0.0f);
-
-        GeoPoint lastLocation = new GeoPoint(lat, lon);
-
-		if (lastUpdateTime < 0 || currentTime - lastUpdateTime > POINT_UPDATE_INTERVAL
-				|| lastLocation == null || currentLocation.distanceTo(lastLocation) > POINT_UPDATE_DISTANCE) {
-			refresh();
-		}
+		refreshScheduler.requestCheck();
 	}
 
+	/**
+	 * Refresh points around last location. If refresh is running, new one starts after it.
+	 */
 	public void refresh() {
-		if (refreshProvidersTask != null && !refreshProvidersTask.isDone())
-			refreshProvidersTask.cancel(true);
-
-		if (lastLocation == null) {
-			return;
-		}
-		final GeoPoint geoPoint = new GeoPoint(lastLocation);
+		refreshScheduler.requestRefresh();
+	}
 
-		refreshProvidersTask = executor.submit(new Runnable() {
+	/**
+	 * Restart refresh that didn't finish before service was destroyed
+	 */
+	private void resumeRefresh() {
+		executor.execute(new Runnable() {
 			@Override
 			public void run() {
-				try {
-					Log.i(getClass().getSimpleName(), "Starting points refresh for geoPoint " + geoPoint);
-					long refreshStartTime = System.nanoTime();
-					commitRefreshTimeAndLocation(System.currentTimeMillis(), geoPoint);
-					refreshRemote(geoPoint);
-					long refreshEndTime = System.nanoTime();
-					Log.i(getClass().getSimpleName(), "Points refresh time: " + (refreshEndTime - refreshStartTime) * 1e-9f);
-
-					notifyDataUpdated(true);
-
-				} catch (Exception ex) {
-					// TODO: refreshRemote should throw specific checked exception
-					Log.e(getClass().getSimpleName(), "Cannot refresh provider: " + ex);
-					notifyDataUpdateFailed(ex);
+				final GeoPoint center = database.loadUnfinishedRefreshRun(
+						System.currentTimeMillis() - TILE_UPDATE_INTERVAL);
+				if (center != null) {
+					handler.post(new Runnable() {
+						@Override
+						public void run() {
+							Log.i(getClass().getSimpleName(), "Resuming interrupted points refresh for geoPoint " + center);
+							refreshScheduler.resumeRefresh(center.getLatitude(), center.getLongitude());
+						}
+					});
 				}
 			}
 		});
 	}
 
+	private final RefreshScheduler.Callback refreshCallback = new RefreshScheduler.Callback() {
+		@Override
+		public boolean isNetworkAvailable() {
+			ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+			NetworkInfo networkInfo = cm.getActiveNetworkInfo();
+			return networkInfo != null && networkInfo.isConnected();
+		}
+
+		@Override
+		public void startRefresh(double lat, double lon) {
+			final GeoPoint geoPoint = new GeoPoint(lat, lon);
+
+			// Cancelled refresh can finish after next one started
+			final Object token = new Object();
+			refreshToken = token;
+
+			refreshProvidersTask = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Log.i(getClass().getSimpleName(), "Starting points refresh for geoPoint " + geoPoint);
+						commitRefreshTimeAndLocation(System.currentTimeMillis(), geoPoint);
+						refreshRemote(geoPoint);
+
+						notifyDataUpdated(true);
+
+					} catch (Exception ex) {
+						// TODO: refreshRemote should throw specific checked exception
+						Log.e(getClass().getSimpleName(), "Cannot refresh provider: " + ex);
+						notifyDataUpdateFailed(ex);
+					} finally {
+						handler.post(new Runnable() {
+							@Override
+							public void run() {
+								if (refreshToken == token) {
+									refreshToken = null;
+									refreshScheduler.onRefreshFinished();
+								}
+							}
+						});
+					}
+				}
+			});
+		}
+
+		@Override
+		public void cancelRefresh() {
+			if (refreshProvidersTask != null) {
+				refreshProvidersTask.cancel(true);
+			}
+		}
+	};
+
 	public void synchronize() {
-		if (synchronizationTask != null && !synchronizationTask.isDone())
+		if (isSynchronizing) {
+			isSynchronizationRequested = true;
 			return;
+		}
 
+		isSynchronizing = true;
+		isSynchronizationRequested = false;
 		synchronizationTask = executor.submit(new Runnable() {
 			@Override
 			public void run() {
@@ -219,29 +370,104 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 				} catch (PointsException ex) {
 					Log.e(getClass().getSimpleName(), "Points synchronization failed: " + ex);
 					// TODO: report user
+				} catch (InterruptedException ex) {
+					Log.i(getClass().getSimpleName(), "Points synchronization cancelled");
+				} finally {
+					handler.post(synchronizationFinishedRunnable);
 				}
 			}
 		});
 	}
 
-	public void setLocation(Location location) {
-		this.lastLocation = location;
+	private final Runnable synchronizationFinishedRunnable = new Runnable() {
+		@Override
+		public void run() {
+			isSynchronizing = false;
+			if (isSynchronizationRequested) {
+				synchronize();
+			}
+		}
+	};
+
+	private final Runnable synchronizeRunnable = new Runnable() {
+		@Override
+		public void run() {
+			synchronize();
+		}
+	};
 
-		refreshIfNeed();
+	public void setLocation(Location location) {
+		refreshScheduler.onLocation(location.getLatitude(), location.getLongitude());
 	}
 
+	/**
+	 * Upload points from outbox which retry time has come and schedule next pass to earliest retry time
+	 */
 	@Blocking
-	private void doSynchronize() throws PointsException {
+	private void doSynchronize() throws PointsException, InterruptedException {
 		PointsProvider provider = setupProvider();
-		Cursor pointsToUpload = database.loadNotSynchronizedPoints();
+		database.resetOutbox();
 
-		while (pointsToUpload.moveToNext()) {
-			Point point = new Point(pointsToUpload, 1);
-			String newUuid = provider.uploadPoint(point);
-			database.markAsUploaded(point, newUuid);
+		List<Point> points;
+		while (!(points = database.loadOutbox(System.currentTimeMillis(), UPLOAD_BATCH_SIZE)).isEmpty()) {
+			uploadPoints(provider, points);
 		}
 
-		pointsToUpload.close();
+		long nextAttempt = database.loadOutboxNextAttempt();
+		if (nextAttempt >= 0) {
+			long delay = Math.max(nextAttempt - System.currentTimeMillis(), 0);
+			Log.i(getClass().getSimpleName(), "Next points upload in " + delay / 1000 + " s");
+			handler.removeCallbacks(synchronizeRunnable);
+			handler.postDelayed(synchronizeRunnable, delay);
+		}
+	}
+
+	/**
+	 * Upload points concurrently keeping at most {@link #UPLOAD_WINDOW} requests in flight.
+	 * Results are written from this thread as requests complete.
+	 */
+	@Blocking
+	private void uploadPoints(final PointsProvider provider, List<Point> points) throws InterruptedException {
+		CompletionService<String> completion = new ExecutorCompletionService<>(fetchExecutor);
+		Map<Future<String>, Point> inFlight = new HashMap<>();
+		PointsChange change = new PointsChange();
+
+		int next = 0;
+		try {
+			while (next < points.size() || !inFlight.isEmpty()) {
+				while (next < points.size() && inFlight.size() < UPLOAD_WINDOW) {
+					final Point point = points.get(next++);
+					inFlight.put(completion.submit(new Callable<String>() {
+						@Override
+						public String call() throws PointsException {
+							return provider.uploadPoint(point);
+						}
+					}), point);
+				}
+
+				Future<String> future = completion.take();
+				Point point = inFlight.remove(future);
+				try {
+					String newUuid = future.get();
+					database.markAsUploaded(point, newUuid);
+					change.addPoint(point.getUuid(), point.getCategory().getId(), point.getLatE6(), point.getLonE6());
+					change.addPoint(newUuid, point.getCategory().getId(), point.getLatE6(), point.getLonE6());
+				} catch (ExecutionException ex) {
+					Log.w(getClass().getSimpleName(), "Point upload failed: " + ex.getCause());
+					database.markUploadFailed(point, String.valueOf(ex.getCause()), System.currentTimeMillis(),
+							UPLOAD_RETRY_INTERVAL, UPLOAD_MAX_RETRY_INTERVAL);
+				}
+			}
+		} finally {
+			// Points of cancelled requests stay in uploading state until next pass
+			for (Future<String> future : inFlight.keySet()) {
+				future.cancel(true);
+			}
+
+			if (!change.isEmpty()) {
+				notifyPointsChanged(change);
+			}
+		}
 	}
 
 	public void notifyDataUpdated(final boolean isRemoteUpdate) {
@@ -255,6 +481,198 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		});
 	}
 
+	/**
+	 * Schedule change notification. Changes arriving within {@link #CHANGE_NOTIFY_DELAY}
+	 * are delivered to listeners as one merged change.
+	 */
+	private void notifyPointsChanged(PointsChange change) {
+		synchronized (changeLock) {
+			if (pendingChange != null) {
+				pendingChange.merge(change);
+				return;
+			}
+
+			pendingChange = change;
+		}
+
+		handler.postDelayed(dispatchChangeRunnable, CHANGE_NOTIFY_DELAY);
+	}
+
+	private final Runnable dispatchChangeRunnable = new Runnable() {
+		@Override
+		public void run() {
+			final PointsChange change;
+			synchronized (changeLock) {
+				change = pendingChange;
+				pendingChange = null;
+			}
+
+			if (snapshot == null) {
+				// Persisted snapshot still has to follow refreshes made while no one holds it in memory
+				snapshotExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						schedulePersistSnapshot();
+					}
+				});
+				dispatchChange(change);
+				return;
+			}
+
+			// Listeners receive change after snapshot includes it
+			snapshotExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					snapshot = snapshot.update(database, change);
+					schedulePersistSnapshot();
+					handler.post(new Runnable() {
+						@Override
+						public void run() {
+							dispatchChange(change);
+						}
+					});
+				}
+			});
+		}
+	};
+
+	private void dispatchChange(PointsChange change) {
+		for (ChangeListener listener : changeListeners) {
+			listener.onPointsChanged(change);
+		}
+	}
+
+	/**
+	 * Build snapshot of visible points if it isn't built yet. Snapshot is updated on each change
+	 * before {@link ChangeListener} notified.
+	 */
+	public void requestSnapshot(final Function<PointsSnapshot> callback) {
+		snapshotExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean isPersisted = false;
+				if (snapshot == null) {
+					snapshot = loadPersistedSnapshot(PointsService.this);
+					isPersisted = snapshot != null;
+				}
+
+				final PointsSnapshot currentSnapshot = snapshot;
+				if (currentSnapshot != null) {
+					handler.post(new Runnable() {
+						@Override
+						public void run() {
+							callback.call(currentSnapshot);
+						}
+					});
+				}
+
+				// Persisted snapshot can miss changes of last SNAPSHOT_PERSIST_DELAY before exit, so it's replaced
+				if (snapshot == null || isPersisted) {
+					long startTime = System.nanoTime();
+					snapshot = PointsSnapshot.load(database);
+					Log.v(getClass().getSimpleName(), "Snapshot of " + snapshot.size() + " points loaded in "
+							+ (System.nanoTime() - startTime) / 1000000 + " ms");
+					schedulePersistSnapshot();
+
+					final PointsSnapshot loadedSnapshot = snapshot;
+					handler.post(new Runnable() {
+						@Override
+						public void run() {
+							if (currentSnapshot == null) {
+								callback.call(loadedSnapshot);
+							} else {
+								dispatchChange(PointsChange.full());
+							}
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * Map snapshot of visible points persisted by last service run. Database isn't opened, so
+	 * points can be drawn before service is bound.
+	 *
+	 * @return persisted snapshot or null if there is no valid one
+	 */
+	@Nullable
+	public static PointsSnapshot loadPersistedSnapshot(Context context) {
+		File file = new File(context.getFilesDir(), SNAPSHOT_FILE);
+		if (!file.exists()) {
+			return null;
+		}
+
+		long startTime = System.nanoTime();
+		try {
+			PointsSnapshot snapshot = PointsSnapshot.map(file);
+			Log.v(PointsService.class.getSimpleName(), "Snapshot of " + snapshot.size() + " points mapped in "
+					+ (System.nanoTime() - startTime) / 1000000 + " ms");
+			return snapshot;
+		} catch (IOException ex) {
+			Log.w(PointsService.class.getSimpleName(), "Cannot map persisted snapshot: " + ex);
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Schedule write of current snapshot. Changes applied during {@link #SNAPSHOT_PERSIST_DELAY}
+	 * after first one are written once. Must be called on snapshotExecutor.
+	 */
+	private void schedulePersistSnapshot() {
+		if (!isSnapshotPersistScheduled) {
+			isSnapshotPersistScheduled = true;
+			handler.postDelayed(persistSnapshotRunnable, SNAPSHOT_PERSIST_DELAY);
+		}
+	}
+
+	private final Runnable persistSnapshotRunnable = new Runnable() {
+		@Override
+		public void run() {
+			// Can be posted by snapshotExecutor while service is being destroyed
+			if (snapshotExecutor.isShutdown()) {
+				return;
+			}
+
+			snapshotExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					isSnapshotPersistScheduled = false;
+					persistSnapshot();
+				}
+			});
+		}
+	};
+
+	/**
+	 * Write snapshot of visible points for next cold start. If no snapshot is kept in memory, it's
+	 * loaded from database only to be written.
+	 */
+	@Blocking
+	private void persistSnapshot() {
+		long startTime = System.nanoTime();
+		try {
+			PointsSnapshot currentSnapshot = snapshot;
+			if (currentSnapshot == null) {
+				currentSnapshot = PointsSnapshot.load(database);
+			}
+			currentSnapshot.write(new File(getFilesDir(), SNAPSHOT_FILE));
+			Log.v(getClass().getSimpleName(), "Snapshot persisted in " + (System.nanoTime() - startTime) / 1000000
+					+ " ms");
+		} catch (IOException ex) {
+			Log.w(getClass().getSimpleName(), "Cannot persist snapshot: " + ex);
+		}
+	}
+
+	/**
+	 * @return latest snapshot of visible points or null if {@link #requestSnapshot(Function)} wasn't called
+	 */
+	@Nullable
+	public PointsSnapshot getSnapshot() {
+		return snapshot;
+	}
+
 	private void notifyDataUpdateFailed(final Throwable throwable) {
 		handler.post(new Runnable() {
 			@Override
@@ -296,6 +714,50 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		return ret;
 	}
 
+	/**
+	 * Load page of request in background and deliver it to main thread
+	 *
+	 * @see Pager
+	 */
+	public <T> void queryPage(final PagedRequest<T> request, final long afterKey, final int limit,
+							  final Function<Page<T>> callback) {
+		new AsyncTask<Void, Void, Page<T>>() {
+			@Override
+			protected Page<T> doInBackground(Void... params) {
+				return queryPage(request, afterKey, limit);
+			}
+
+			@Override
+			protected void onPostExecute(Page<T> page) {
+				callback.call(page);
+			}
+		}.execute();
+	}
+
+	/**
+	 * @param afterKey key of last row of previous page or {@link Long#MIN_VALUE} for first page
+	 */
+	@Blocking
+	public <T> Page<T> queryPage(PagedRequest<T> request, long afterKey, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Page limit must be positive");
+		}
+
+		// One extra row tells whether there are more pages
+		Cursor cursor = request.doQuery(afterKey, limit + 1);
+		try {
+			List<T> items = new ArrayList<>(Math.min(cursor.getCount(), limit));
+			long lastKey = afterKey;
+			while (items.size() < limit && cursor.moveToNext()) {
+				items.add(request.cursorToObject(cursor));
+				lastKey = request.getKey(cursor);
+			}
+			return new Page<>(items, lastKey, cursor.getCount() <= limit);
+		} finally {
+			cursor.close();
+		}
+	}
+
 	public Request<Category> requestCategories() {
 		return new Request<Category>() {
 			@Override
@@ -315,40 +777,116 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		};
 	}
 
-	public Request<Point> requestPoints() {
-		return new Request<Point>() {
+	public PagedRequest<Point> requestPoints() {
+		return new PagedPointsRequest() {
 			@Override
-			public Cursor doQuery() {
-				return database.loadPoints();
+			public Cursor doQuery(long afterKey, int limit) {
+				return database.loadPoints(afterKey, limit);
 			}
+		};
+	}
+
+	/**
+	 * Visible points inside map viewport
+	 */
+	public PagedRequest<Point> requestPointsInBox(BoundingBox box) {
+		final int minLatE6 = (int) (box.getLatSouth() * 1e6);
+		final int minLonE6 = (int) (box.getLonWest() * 1e6);
+		final int maxLatE6 = (int) (box.getLatNorth() * 1e6);
+		final int maxLonE6 = (int) (box.getLonEast() * 1e6);
 
+		return new PagedPointsRequest() {
 			@Override
-			public Point cursorToObject(Cursor cursor) {
-				return new Point(cursor, 1);
+			public Cursor doQuery(long afterKey, int limit) {
+				return database.loadPointsInBoundingBox(minLatE6, minLonE6, maxLatE6, maxLonE6, afterKey, limit);
 			}
+		};
+	}
 
+	/**
+	 * Visible points which name, description or category name have words starting with words of query.
+	 * Points matching by name go first.
+	 *
+	 * @param box optional area to search in
+	 */
+	public Request<Point> requestSearch(final String query, @Nullable BoundingBox box) {
+		if (box == null) {
+			return new PointsRequest() {
+				@Override
+				public Cursor doQuery() {
+					return database.searchPoints(query, SEARCH_LIMIT);
+				}
+			};
+		}
+
+		final int minLatE6 = (int) (box.getLatSouth() * 1e6);
+		final int minLonE6 = (int) (box.getLonWest() * 1e6);
+		final int maxLatE6 = (int) (box.getLatNorth() * 1e6);
+		final int maxLonE6 = (int) (box.getLonEast() * 1e6);
+
+		return new PointsRequest() {
 			@Override
-			public int getId(Point point) {
-				throw new UnsupportedOperationException("Point doesn't has public id");
+			public Cursor doQuery() {
+				return database.searchPoints(query, minLatE6, minLonE6, maxLatE6, maxLonE6, SEARCH_LIMIT);
 			}
 		};
 	}
 
-	public Request<Point> requestPrivatePoints() {
-		return new Request<Point>() {
+	/**
+	 * k visible points nearest to center ordered by projected distance
+	 *
+	 * @param maxRadius maximum distance in meters, 0 for no limit
+	 * @param categoryIds categories to search in, null for all visible categories
+	 */
+	public Request<Point> requestNearest(GeoPoint center, final int k, final int maxRadius,
+										 @Nullable final int[] categoryIds) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+
+		final int latE6 = (int) (center.getLatitude() * 1e6);
+		final int lonE6 = (int) (center.getLongitude() * 1e6);
+
+		return new PointsRequest() {
 			@Override
 			public Cursor doQuery() {
-				return database.loadPrivatePoints();
+				return database.loadNearestPoints(latE6, lonE6, k, maxRadius, categoryIds);
 			}
+		};
+	}
 
+	/**
+	 * Find obstacles within width meters of route in background and deliver result to main thread
+	 */
+	public void queryRouteCost(final List<GeoPoint> route, final int width, final Function<RouteCost> callback) {
+		new AsyncTask<Void, Void, RouteCost>() {
 			@Override
-			public Point cursorToObject(Cursor cursor) {
-				return new Point(cursor, 1);
+			protected RouteCost doInBackground(Void... params) {
+				return queryRouteCost(route, width);
 			}
 
 			@Override
-			public int getId(Point point) {
-				throw new UnsupportedOperationException("Point doesn't has public id");
+			protected void onPostExecute(RouteCost routeCost) {
+				callback.call(routeCost);
+			}
+		}.execute();
+	}
+
+	/**
+	 * Find obstacles within width meters of route with their cost for active disability
+	 *
+	 * @param route route polyline
+	 */
+	@Blocking
+	public RouteCost queryRouteCost(List<GeoPoint> route, int width) {
+		return new RouteCost(database.loadRouteObstacles(route, width));
+	}
+
+	public PagedRequest<Point> requestPrivatePoints() {
+		return new PagedPointsRequest() {
+			@Override
+			public Cursor doQuery(long afterKey, int limit) {
+				return database.loadPrivatePoints(afterKey, limit);
 			}
 		};
 	}
@@ -373,12 +911,35 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 	}
 
 	@Blocking
-	private void refreshRemote(GeoPoint geoPoint) throws PointsException {
-		PointsProvider pointsProvider = setupProvider();
-		
+	private void refreshRemote(final GeoPoint geoPoint) throws PointsException {
+		long startTime = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		List<CategoryMetrics> categoryMetrics = new ArrayList<>();
+		boolean isCompleted = false;
+
+		database.startRefreshRun(geoPoint, startTime);
+		try {
+			refreshRemote(geoPoint, categoryMetrics);
+			isCompleted = !Thread.currentThread().isInterrupted();
+			if (isCompleted) {
+				database.finishRefreshRun();
+			}
+		} finally {
+			publishRefreshMetrics(new RefreshMetrics(startTime, System.nanoTime() - startNanos, isCompleted,
+					categoryMetrics));
+		}
+	}
+
+	/**
+	 * @param categoryMetrics receives metrics of each finished category download
+	 */
+	@Blocking
+	private void refreshRemote(final GeoPoint geoPoint, List<CategoryMetrics> categoryMetrics) throws PointsException {
+		final PointsProvider pointsProvider = setupProvider();
+
 		List<Disability> disabilities = pointsProvider.loadDisabilities();
-		if (disabilities != null) {
-			database.setDisabilities(disabilities);
+		if (disabilities != null && database.setDisabilities(disabilities)) {
+			notifyPointsChanged(PointsChange.full());
 		}
 
 		List<Category> categories;
@@ -386,24 +947,133 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 
 		for (Category category : categories) {
 			database.insertCategory(category);
+			IconCache.getInstance().request(category.getIconUrl());
+		}
 
-			if (Thread.currentThread().isInterrupted()) {
-				return;
+		// Only tiles around user that are missing or stale are requested for each category
+		long refreshTime = System.currentTimeMillis();
+		int[] tiles = TileCoverage.tilesAround(geoPoint, PointsProvider.DEFAULT_RADIUS);
+		List<CategoryFetch> plannedFetches = new ArrayList<>(categories.size());
+		for (Category category : categories) {
+			int[] staleTiles = database.loadStaleTiles(category.getId(), tiles, refreshTime - TILE_UPDATE_INTERVAL);
+			if (staleTiles.length > 0) {
+				CategoryFetch fetch = TileCoverage.planFetch(category, staleTiles);
+				fetch.setValidator(database.loadFetchValidator(category.getId(), fetch.getArea()));
+				plannedFetches.add(fetch);
+			}
+		}
+		Log.v(getClass().getSimpleName(), plannedFetches.size() + " of " + categories.size() + " categories need update");
+
+		// Categories downloaded and parsed concurrently, this thread is the only database writer.
+		// Parsed points arrive in chunks through bounded queue, so memory doesn't depend on response size
+		final BlockingQueue<PointsChunk> chunks = new ArrayBlockingQueue<>(POINT_CHUNK_QUEUE_SIZE);
+		database.clearReceivedUuids();
+		List<Future<?>> fetches = new ArrayList<>(plannedFetches.size());
+		for (final CategoryFetch fetch : plannedFetches) {
+			fetches.add(fetchExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					ChunkedPointsSink sink = new ChunkedPointsSink(chunks, fetch, POINT_CHUNK_SIZE);
+					fetch.onStarted();
+					try {
+						Log.v(getClass().getSimpleName(), "Loading points for category " + fetch.getCategory().getName());
+						int count = pointsProvider.loadPoints(fetch.getCategory(), fetch.getCenter(), fetch.getRadius(),
+								fetch.getValidator(), sink);
+						fetch.setNotModified(count == PointsProvider.NOT_MODIFIED);
+						fetch.setSuccessful(true);
+						Log.v(getClass().getSimpleName(), "Points loaded, size=" + count);
+					} catch (PointsException ex) {
+						Log.w(getClass().getSimpleName(), "Cannot load points: " + ex);
+					} finally {
+						try {
+							sink.finish();
+						} catch (InterruptedIOException ignored) {
+							// Writer is cancelled too
+						}
+					}
+				}
+			}));
+		}
+
+		try {
+			int running = fetches.size();
+			while (running > 0) {
+				if (writeChunk(chunks.take(), refreshTime, categoryMetrics)) {
+					running--;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+
+			// Stop fetches first, then keep categories already received completely,
+			// so next refresh doesn't download them again
+			for (Future<?> fetch : fetches) {
+				fetch.cancel(true);
+			}
+			PointsChunk chunk;
+			while ((chunk = chunks.poll()) != null) {
+				writeChunk(chunk, refreshTime, categoryMetrics);
+			}
+		} finally {
+			for (Future<?> fetch : fetches) {
+				fetch.cancel(true);
 			}
+		}
+	}
+
+	/**
+	 * Store chunk of points. Last chunk of successful fetch checkpoints category: its tiles become
+	 * fresh and are skipped by following refreshes until {@link #TILE_UPDATE_INTERVAL} passes.
+	 *
+	 * @return true if chunk was last chunk of its fetch
+	 */
+	@Blocking
+	private boolean writeChunk(PointsChunk chunk, long refreshTime, List<CategoryMetrics> categoryMetrics) {
+		CategoryFetch fetch = chunk.getFetch();
+		PointsChange change = new PointsChange();
+		change.setRemoteUpdate(true);
 
-			List<Point> points;
+		if (!chunk.getPoints().isEmpty() && !fetch.isInsertFailed()) {
+			long insertStartTime = System.nanoTime();
 			try {
-				Log.v(getClass().getSimpleName(), "Loading points for category " + category.getName());
-				points = pointsProvider.loadPoints(category, geoPoint);
-				Log.v(getClass().getSimpleName(), "Points loaded, size=" + points.size());
-			} catch (PointsException ex) {
-				continue;
+				database.insertReceivedUuids(fetch.getCategory().getId(), chunk.getPoints());
+				int inserted = database.insertPoints(chunk.getPoints(), change);
+				fetch.addInserted(inserted, System.nanoTime() - insertStartTime);
+			} catch (SQLException ex) {
+				Log.e(getClass().getSimpleName(), "Cannot store points of category "
+						+ fetch.getCategory().getName() + ": " + ex);
+				fetch.setInsertFailed();
 			}
+		}
+
+		refreshScheduler.onRefreshProgress();
+
+		if (chunk.isLast()) {
+			long insertStartTime = System.nanoTime();
+			// Category with lost points stays stale, so next refresh downloads it again
+			if (fetch.isSuccessful() && !fetch.isInsertFailed()) {
+				// Full answer: points missing in it were removed on server
+				if (!fetch.isNotModified()) {
+					int deleted = database.deleteMissingPoints(fetch.getCategory().getId(),
+							fetch.getCenter(), fetch.getRadius(), change);
+					Log.v(getClass().getSimpleName(), "Points removed, size=" + deleted);
+
+					// Validator is stored only after all points of response are stored
+					database.storeFetchValidator(fetch.getCategory().getId(), fetch.getArea(),
+							fetch.getReceivedValidator());
+				}
+				database.markTilesUpdated(fetch.getCategory().getId(), fetch.getTiles(), refreshTime);
+			}
+			database.clearReceivedUuids(fetch.getCategory().getId());
+			fetch.addInserted(0, System.nanoTime() - insertStartTime);
+			categoryMetrics.add(fetch.toMetrics(System.nanoTime()));
+		}
 
-			//log.debug("Inserting points to database");
-			database.insertPoints(points);
-			//log.debug("Points inserted to database");
+		if (!change.isEmpty()) {
+			notifyPointsChanged(change);
 		}
+
+		return chunk.isLast();
 	}
 
 	public void addListener(Listener listener) {
@@ -414,6 +1084,53 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		listeners.remove(listener);
 	}
 
+	public void addMetricsListener(MetricsListener listener) {
+		metricsListeners.add(listener);
+	}
+
+	public void removeMetricsListener(MetricsListener listener) {
+		metricsListeners.remove(listener);
+	}
+
+	/**
+	 * @return counters and histograms of all refreshes since service start
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return metrics of last finished refresh, null if there was no refresh yet
+	 */
+	@Nullable
+	public RefreshMetrics getLastRefreshMetrics() {
+		return lastRefreshMetrics;
+	}
+
+	private void publishRefreshMetrics(final RefreshMetrics refreshMetrics) {
+		Log.i(getClass().getSimpleName(), "Points refresh: " + refreshMetrics);
+
+		lastRefreshMetrics = refreshMetrics;
+		metrics.record(refreshMetrics);
+
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				for (MetricsListener listener : metricsListeners) {
+					listener.onRefreshMetrics(refreshMetrics);
+				}
+			}
+		});
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		changeListeners.add(listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		changeListeners.remove(listener);
+	}
+
 	public void setServerUrl(String uri) {
         serverUrl = uri;
     }
@@ -423,13 +1140,18 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 
 		GetsProvider getsProvider;
         if (serverUrl == null) throw new NullPointerException("GeTS server url not defined");
-		getsProvider = new GetsProvider(appPref.getString(PREF_GETS_TOKEN, null), serverUrl);
+		getsProvider = new GetsProvider(appPref.getString(PREF_GETS_TOKEN, null), serverUrl, transport);
 		return getsProvider;
 	}
 
 	public void addPoint(Point point) {
 		database.insertPoint(point);
 		notifyDataUpdated(false);
+
+		PointsChange change = new PointsChange();
+		change.addPoint(point.getUuid(), point.getCategory().getId(), point.getLatE6(), point.getLonE6());
+		notifyPointsChanged(change);
+
 		synchronize();
 	}
 
@@ -437,16 +1159,62 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		database.insertCategory(category);
 	}
 
-	public void setDisabilityState(Disability disability, boolean isActive) {
-		database.setDisabilityState(disability, isActive);
+	/**
+	 * Change is applied on database thread, so it is ordered with points being written
+	 * and with {@link #setCostCombine(int)}. Listeners are notified by {@link #commitDisabilityStates()}.
+	 */
+	public void setDisabilityState(final Disability disability, final boolean isActive) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				database.setDisabilityState(disability, isActive);
+			}
+		});
 	}
 
-	public void setCategoryState(Category category, boolean isActive) {
-		database.setCategoryState(category, isActive);
+	/**
+	 * Change is applied on database thread, so it is ordered with points being written.
+	 * Listeners are notified after it is stored.
+	 */
+	public void setCategoryState(final Category category, final boolean isActive) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				database.setCategoryState(category, isActive);
+				notifyPointsChanged(PointsChange.category(category.getId()));
+			}
+		});
 	}
 
 	public void commitDisabilityStates() {
-		notifyDataUpdated(false);
+		// Queued after disability states, so listeners see all of them applied
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				notifyDataUpdated(false);
+				notifyPointsChanged(PointsChange.full());
+			}
+		});
+	}
+
+	/**
+	 * @param combine {@link CostModel#COMBINE_MAX} or {@link CostModel#COMBINE_SUM}
+	 */
+	public void setCostCombine(final int combine) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				database.setCostCombine(combine);
+
+				// Stored difficulty of all points is rescored
+				notifyDataUpdated(false);
+				notifyPointsChanged(PointsChange.full());
+			}
+		});
+	}
+
+	public CostModel getCostModel() {
+		return database.getCostModel();
 	}
 
 	public class Binder extends android.os.Binder {
@@ -459,4 +1227,18 @@ public class PointsService extends Service implements SharedPreferences.OnShared
 		void onDataUpdated(boolean isRemoteUpdate);
 		void onDataUpdateFailed(Throwable throwable);
 	}
+
+	/**
+	 * Listener of changes of stored points, called on main thread
+	 */
+	public interface ChangeListener {
+		void onPointsChanged(PointsChange change);
+	}
+
+	/**
+	 * Listener of finished refreshes, called on main thread
+	 */
+	public interface MetricsListener {
+		void onRefreshMetrics(RefreshMetrics metrics);
+	}
 }
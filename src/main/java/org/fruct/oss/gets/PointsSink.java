@@ -0,0 +1,10 @@
+package org.fruct.oss.gets;
+
+import java.io.IOException;
+
+/**
+ * Receiver of points streamed from provider while response is being parsed
+ */
+public interface PointsSink {
+	void addPoint(Point point) throws IOException;
+}
@@ -0,0 +1,378 @@
+package org.fruct.oss.gets;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Immutable columnar copy of visible points: coordinates, category and rating in primitive arrays,
+ * row of point found by uuid through dictionary. Safe to read from any thread.
+ *
+ * Snapshot is updated by creating new one with {@link #update(PointsDatabase, PointsChange)},
+ * which reloads only changed rows.
+ *
+ * Snapshot can be persisted with {@link #write(File)} and mapped back with {@link #map(File)}
+ * without database. File has header, fixed-width record area stored column by column and heap of
+ * uuids in UTF-8. All integers are little-endian:
+ *
+ * <pre>
+ * magic, version, size, heapSize
+ * latE6[size], lonE6[size], categoryId[size], rating[size], uuidOffset[size + 1]
+ * heap[heapSize]
+ * </pre>
+ */
+public class PointsSnapshot {
+	private static final int FILE_MAGIC = 0x53535047; // "GPSS"
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 16;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final int size;
+	private final int[] latE6;
+	private final int[] lonE6;
+	private final int[] categoryIds;
+	private final int[] ratings;
+
+	// Uuids of mapped snapshot are decoded from heap on first access
+	private final String[] uuids;
+	private final ByteBuffer uuidHeap;
+	private final int[] uuidOffsets;
+
+	// Built on first lookup for mapped snapshot
+	private TObjectIntMap<String> uuidIndex;
+
+	private PointsSnapshot(Builder builder) {
+		size = builder.latE6.size();
+		latE6 = builder.latE6.toArray();
+		lonE6 = builder.lonE6.toArray();
+		categoryIds = builder.categoryIds.toArray();
+		ratings = builder.ratings.toArray();
+		uuids = builder.uuids.toArray(new String[size]);
+		uuidHeap = null;
+		uuidOffsets = null;
+		uuidIndex = builder.uuidIndex;
+	}
+
+	private PointsSnapshot(int[] latE6, int[] lonE6, int[] categoryIds, int[] ratings,
+						   ByteBuffer uuidHeap, int[] uuidOffsets) {
+		size = latE6.length;
+		this.latE6 = latE6;
+		this.lonE6 = lonE6;
+		this.categoryIds = categoryIds;
+		this.ratings = ratings;
+		this.uuids = new String[size];
+		this.uuidHeap = uuidHeap;
+		this.uuidOffsets = uuidOffsets;
+	}
+
+	public static PointsSnapshot load(PointsDatabase database) {
+		Builder builder = new Builder(0);
+		database.loadSnapshotRows(builder);
+		return builder.build();
+	}
+
+	/**
+	 * Map snapshot written by {@link #write(File)}. Columns are copied to arrays in bulk, uuids stay
+	 * in mapped heap, so points can be drawn without decoding any string.
+	 *
+	 * @throws IOException if file can't be read or has wrong format
+	 */
+	public static PointsSnapshot map(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long length = channel.size();
+			if (length < FILE_HEADER_SIZE) {
+				throw new IOException("Snapshot file truncated");
+			}
+
+			// Mapping stays valid after file closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+				throw new IOException("Unknown snapshot file format");
+			}
+
+			int size = buffer.getInt();
+			int heapSize = buffer.getInt();
+			if (size < 0 || heapSize < 0
+					|| length != FILE_HEADER_SIZE + (5L * size + 1) * 4 + heapSize) {
+				throw new IOException("Snapshot file size mismatch");
+			}
+
+			int[] latE6 = new int[size];
+			int[] lonE6 = new int[size];
+			int[] categoryIds = new int[size];
+			int[] ratings = new int[size];
+			int[] uuidOffsets = new int[size + 1];
+
+			IntBuffer records = buffer.asIntBuffer();
+			records.get(latE6);
+			records.get(lonE6);
+			records.get(categoryIds);
+			records.get(ratings);
+			records.get(uuidOffsets);
+
+			for (int i = 0; i < size; i++) {
+				if (uuidOffsets[i] < 0 || uuidOffsets[i] > uuidOffsets[i + 1]) {
+					throw new IOException("Snapshot file has invalid uuid offsets");
+				}
+			}
+			if (uuidOffsets[size] != heapSize) {
+				throw new IOException("Snapshot file has invalid uuid offsets");
+			}
+
+			buffer.position(FILE_HEADER_SIZE + (size * 5 + 1) * 4);
+			ByteBuffer uuidHeap = buffer.slice();
+
+			return new PointsSnapshot(latE6, lonE6, categoryIds, ratings, uuidHeap, uuidOffsets);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Write snapshot in format of {@link #map(File)}. File is replaced atomically, so snapshot
+	 * mapped from previous file stays valid.
+	 */
+	public void write(File file) throws IOException {
+		byte[][] uuidBytes = new byte[size][];
+		int heapSize = 0;
+		for (int i = 0; i < size; i++) {
+			uuidBytes[i] = getUuid(i).getBytes(UTF_8);
+			heapSize += uuidBytes[i].length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE + (size * 5 + 1) * 4 + heapSize);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(size).putInt(heapSize);
+
+		for (int[] column : new int[][] { latE6, lonE6, categoryIds, ratings }) {
+			for (int i = 0; i < size; i++) {
+				buffer.putInt(column[i]);
+			}
+		}
+
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			buffer.putInt(offset);
+			offset += uuidBytes[i].length;
+		}
+		buffer.putInt(offset);
+
+		for (byte[] bytes : uuidBytes) {
+			buffer.put(bytes);
+		}
+		buffer.flip();
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmpFile);
+		try {
+			FileChannel channel = out.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		if (!tmpFile.renameTo(file)) {
+			tmpFile.delete();
+			throw new IOException("Cannot replace snapshot file " + file);
+		}
+	}
+
+	/**
+	 * @return new snapshot with rows of changed points and categories reloaded from database
+	 */
+	public PointsSnapshot update(PointsDatabase database, PointsChange change) {
+		if (change.isFull()) {
+			return load(database);
+		}
+
+		TIntSet changedCategories = new TIntHashSet(change.getCategoryIds());
+		Set<String> changedUuids = change.getUuids();
+
+		Builder builder = new Builder(size);
+		for (int i = 0; i < size; i++) {
+			String uuid = getUuid(i);
+			if (!changedCategories.contains(categoryIds[i]) && !changedUuids.contains(uuid)) {
+				builder.add(uuid, latE6[i], lonE6[i], categoryIds[i], ratings[i]);
+			}
+		}
+
+		if (!changedCategories.isEmpty()) {
+			database.loadSnapshotRows(builder, changedCategories.toArray());
+		}
+		if (!changedUuids.isEmpty()) {
+			database.loadSnapshotRows(builder, changedUuids);
+		}
+
+		return builder.build();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getLatE6(int index) {
+		return latE6[index];
+	}
+
+	public int getLonE6(int index) {
+		return lonE6[index];
+	}
+
+	public int getCategoryId(int index) {
+		return categoryIds[index];
+	}
+
+	public int getRating(int index) {
+		return ratings[index];
+	}
+
+	public String getUuid(int index) {
+		String uuid = uuids[index];
+		if (uuid == null) {
+			// Threads racing here decode equal strings, String is safely published by its final fields
+			ByteBuffer heap = uuidHeap.duplicate();
+			heap.position(uuidOffsets[index]);
+			byte[] bytes = new byte[uuidOffsets[index + 1] - uuidOffsets[index]];
+			heap.get(bytes);
+
+			uuid = new String(bytes, UTF_8);
+			uuids[index] = uuid;
+		}
+		return uuid;
+	}
+
+	/**
+	 * @return row of point or -1 if point is not in snapshot
+	 */
+	public int indexOf(String uuid) {
+		TObjectIntMap<String> index = getUuidIndex();
+		return index.containsKey(uuid) ? index.get(uuid) : -1;
+	}
+
+	private synchronized TObjectIntMap<String> getUuidIndex() {
+		if (uuidIndex == null) {
+			uuidIndex = new TObjectIntHashMap<>(Math.max(size, 16));
+			for (int i = 0; i < size; i++) {
+				uuidIndex.put(getUuid(i), i);
+			}
+		}
+		return uuidIndex;
+	}
+
+	/**
+	 * Call visitor for each point inside bounding box
+	 */
+	public void scan(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, Visitor visitor) {
+		for (int i = 0; i < size; i++) {
+			int lat = latE6[i];
+			int lon = lonE6[i];
+			if (lat >= minLatE6 && lat <= maxLatE6 && lon >= minLonE6 && lon <= maxLonE6) {
+				visitor.visit(this, i);
+			}
+		}
+	}
+
+	/**
+	 * @return rows accepted by filter
+	 */
+	public int[] filter(Filter filter) {
+		TIntList rows = new TIntArrayList();
+		for (int i = 0; i < size; i++) {
+			if (filter.accept(this, i)) {
+				rows.add(i);
+			}
+		}
+		return rows.toArray();
+	}
+
+	public int count(Filter filter) {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (filter.accept(this, i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int countInBox(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int lat = latE6[i];
+			int lon = lonE6[i];
+			if (lat >= minLatE6 && lat <= maxLatE6 && lon >= minLonE6 && lon <= maxLonE6) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public interface Visitor {
+		void visit(PointsSnapshot snapshot, int index);
+	}
+
+	public interface Filter {
+		boolean accept(PointsSnapshot snapshot, int index);
+	}
+
+	/**
+	 * Collects rows of snapshot, rows with already added uuid are skipped
+	 */
+	public static class Builder {
+		private final TIntList latE6;
+		private final TIntList lonE6;
+		private final TIntList categoryIds;
+		private final TIntList ratings;
+		private final List<String> uuids;
+		private final TObjectIntMap<String> uuidIndex;
+
+		Builder(int capacity) {
+			latE6 = new TIntArrayList(capacity);
+			lonE6 = new TIntArrayList(capacity);
+			categoryIds = new TIntArrayList(capacity);
+			ratings = new TIntArrayList(capacity);
+			uuids = new ArrayList<>(capacity);
+			uuidIndex = new TObjectIntHashMap<>(Math.max(capacity, 16));
+		}
+
+		public boolean add(String uuid, int latE6, int lonE6, int categoryId, int rating) {
+			if (uuidIndex.containsKey(uuid)) {
+				return false;
+			}
+
+			uuidIndex.put(uuid, uuids.size());
+			uuids.add(uuid);
+			this.latE6.add(latE6);
+			this.lonE6.add(lonE6);
+			categoryIds.add(categoryId);
+			ratings.add(rating);
+			return true;
+		}
+
+		public PointsSnapshot build() {
+			return new PointsSnapshot(this);
+		}
+	}
+}
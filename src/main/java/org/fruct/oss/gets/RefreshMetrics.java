@@ -0,0 +1,118 @@
+package org.fruct.oss.gets;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measurements of one points refresh with totals over its categories
+ */
+public class RefreshMetrics {
+	private final long startTime;
+	private final long elapsedNanos;
+	private final boolean isCompleted;
+	private final List<CategoryMetrics> categories;
+
+	RefreshMetrics(long startTime, long elapsedNanos, boolean isCompleted, List<CategoryMetrics> categories) {
+		this.startTime = startTime;
+		this.elapsedNanos = elapsedNanos;
+		this.isCompleted = isCompleted;
+		this.categories = Collections.unmodifiableList(categories);
+	}
+
+	/**
+	 * @return wall clock time of refresh start
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return false if refresh failed or was cancelled, then only finished categories are reported
+	 */
+	public boolean isCompleted() {
+		return isCompleted;
+	}
+
+	/**
+	 * @return categories downloaded by refresh, fresh categories are not downloaded
+	 */
+	public List<CategoryMetrics> getCategories() {
+		return categories;
+	}
+
+	public long getBytes() {
+		long bytes = 0;
+		for (CategoryMetrics category : categories) {
+			bytes += category.getBytes();
+		}
+		return bytes;
+	}
+
+	public int getPointsParsed() {
+		int points = 0;
+		for (CategoryMetrics category : categories) {
+			points += category.getPointsParsed();
+		}
+		return points;
+	}
+
+	public int getPointsInserted() {
+		int points = 0;
+		for (CategoryMetrics category : categories) {
+			points += category.getPointsInserted();
+		}
+		return points;
+	}
+
+	/**
+	 * @return sum of category phase times, categories are downloaded concurrently so it can exceed elapsed time
+	 */
+	public long getConnectNanos() {
+		long nanos = 0;
+		for (CategoryMetrics category : categories) {
+			nanos += category.getConnectNanos();
+		}
+		return nanos;
+	}
+
+	public long getTransferNanos() {
+		long nanos = 0;
+		for (CategoryMetrics category : categories) {
+			nanos += category.getTransferNanos();
+		}
+		return nanos;
+	}
+
+	public long getParseNanos() {
+		long nanos = 0;
+		for (CategoryMetrics category : categories) {
+			nanos += category.getParseNanos();
+		}
+		return nanos;
+	}
+
+	public long getInsertNanos() {
+		long nanos = 0;
+		for (CategoryMetrics category : categories) {
+			nanos += category.getInsertNanos();
+		}
+		return nanos;
+	}
+
+	public double getPointsPerSecond() {
+		return elapsedNanos > 0 ? getPointsParsed() * 1e9 / elapsedNanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RefreshMetrics{" + elapsedNanos / 1000000 + " ms, categories=" + categories.size()
+				+ ", connect=" + getConnectNanos() / 1000000 + " ms, transfer=" + getTransferNanos() / 1000000
+				+ " ms, parse=" + getParseNanos() / 1000000 + " ms, insert=" + getInsertNanos() / 1000000
+				+ " ms, bytes=" + getBytes() + ", parsed=" + getPointsParsed() + ", inserted=" + getPointsInserted()
+				+ ", completed=" + isCompleted + "}";
+	}
+}
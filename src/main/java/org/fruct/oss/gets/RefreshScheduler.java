@@ -0,0 +1,221 @@
+package org.fruct.oss.gets;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.fruct.oss.gets.utils.SpatialGrid;
+
+/**
+ * Decides when location updates should start points refresh.
+ *
+ * Location fixes are coalesced: first fix schedules check after {@link #LOCATION_DEBOUNCE},
+ * following fixes only replace location to check. Refresh starts when user moved away from
+ * last refresh center or refresh is outdated, but not earlier than {@link #MIN_REFRESH_INTERVAL}
+ * after previous one.
+ *
+ * Running refresh is never cancelled by new location, new refresh is started after it finishes.
+ * Only refresh without progress for {@link #STALL_TIMEOUT} is cancelled. Cancelled or interrupted
+ * refresh doesn't lose finished categories, next refresh skips them.
+ *
+ * All methods except {@link #onRefreshProgress()} must be called from handler thread.
+ */
+class RefreshScheduler {
+	private static final String TAG = "RefreshScheduler";
+
+	public static final long LOCATION_DEBOUNCE = 3000;
+	public static final long MIN_REFRESH_INTERVAL = 60 * 1000;
+	public static final long STALL_TIMEOUT = 60 * 1000;
+
+	interface Callback {
+		boolean isNetworkAvailable();
+
+		/**
+		 * Start refresh in background, {@link #onRefreshFinished()} must be called after it completes
+		 */
+		void startRefresh(double lat, double lon);
+
+		void cancelRefresh();
+	}
+
+	private final Handler handler;
+	private final Callback callback;
+	private final long refreshInterval;
+	private final int refreshDistance;
+
+	private boolean hasLocation;
+	private double lat;
+	private double lon;
+
+	// Wall clock time, persisted between service starts
+	private long lastRefreshTime = -1;
+	private double lastRefreshLat;
+	private double lastRefreshLon;
+	private long lastRefreshStartTime = -1;
+
+	private boolean isCheckScheduled;
+	private boolean isRefreshing;
+	private boolean isSuperseded;
+	private boolean isForced;
+	private volatile long lastProgressTime;
+
+	RefreshScheduler(Handler handler, Callback callback, long refreshInterval, int refreshDistance) {
+		this.handler = handler;
+		this.callback = callback;
+		this.refreshInterval = refreshInterval;
+		this.refreshDistance = refreshDistance;
+	}
+
+	void setLastRefresh(long time, double lat, double lon) {
+		lastRefreshTime = time;
+		lastRefreshLat = lat;
+		lastRefreshLon = lon;
+	}
+
+	void onLocation(double lat, double lon) {
+		this.lat = lat;
+		this.lon = lon;
+
+		if (!hasLocation) {
+			hasLocation = true;
+			scheduleCheck(0);
+		} else {
+			scheduleCheck(LOCATION_DEBOUNCE);
+		}
+	}
+
+	/**
+	 * Refresh as soon as possible regardless of distance and time
+	 */
+	void requestRefresh() {
+		isForced = true;
+		check();
+	}
+
+	/**
+	 * Resume refresh interrupted before service restart. It runs around its old center unless
+	 * location is already known.
+	 */
+	void resumeRefresh(double lat, double lon) {
+		if (!hasLocation) {
+			this.lat = lat;
+			this.lon = lon;
+			hasLocation = true;
+		}
+		requestRefresh();
+	}
+
+	/**
+	 * Check refresh conditions without waiting for debounce
+	 */
+	void requestCheck() {
+		check();
+	}
+
+	/**
+	 * Called from refresh thread when refresh made progress
+	 */
+	void onRefreshProgress() {
+		lastProgressTime = elapsedRealtime();
+	}
+
+	void onRefreshFinished() {
+		isRefreshing = false;
+		if (isSuperseded) {
+			isSuperseded = false;
+			check();
+		}
+	}
+
+	void stop() {
+		removeCallbacks(checkRunnable);
+	}
+
+	/**
+	 * Post check if it isn't already posted, so burst of fixes causes single check
+	 */
+	private void scheduleCheck(long delay) {
+		if (!isCheckScheduled) {
+			isCheckScheduled = true;
+			postDelayed(checkRunnable, delay);
+		}
+	}
+
+	private final Runnable checkRunnable = new Runnable() {
+		@Override
+		public void run() {
+			isCheckScheduled = false;
+			check();
+		}
+	};
+
+	private void check() {
+		if (!hasLocation || !isRefreshNeeded()) {
+			return;
+		}
+
+		long sinceLastStart = elapsedRealtime() - lastRefreshStartTime;
+		if (!isForced && lastRefreshStartTime >= 0 && sinceLastStart < MIN_REFRESH_INTERVAL) {
+			scheduleCheck(MIN_REFRESH_INTERVAL - sinceLastStart);
+			return;
+		}
+
+		if (isRefreshing) {
+			if (elapsedRealtime() - lastProgressTime < STALL_TIMEOUT) {
+				// Start new refresh after current one, check again if it stalls
+				isSuperseded = true;
+				scheduleCheck(STALL_TIMEOUT);
+				return;
+			}
+
+			Log.w(TAG, "Refresh stalled, restarting");
+			callback.cancelRefresh();
+			isRefreshing = false;
+		}
+
+		if (!callback.isNetworkAvailable()) {
+			return;
+		}
+
+		isForced = false;
+		isSuperseded = false;
+		isRefreshing = true;
+		lastProgressTime = elapsedRealtime();
+		lastRefreshStartTime = lastProgressTime;
+		setLastRefresh(currentTimeMillis(), lat, lon);
+
+		callback.startRefresh(lat, lon);
+	}
+
+	private boolean isRefreshNeeded() {
+		if (isForced) {
+			return true;
+		}
+
+		if (lastRefreshTime < 0 || currentTimeMillis() - lastRefreshTime > refreshInterval) {
+			return true;
+		}
+
+		double distanceSquared = SpatialGrid.projectedDistanceSquared((int) (lat * 1e6), (int) (lon * 1e6),
+				(int) (lastRefreshLat * 1e6), (int) (lastRefreshLon * 1e6), SpatialGrid.lonScale(lat));
+		return distanceSquared > (double) refreshDistance * refreshDistance;
+	}
+
+	// Clock and handler are overridden by tests
+
+	long elapsedRealtime() {
+		return SystemClock.elapsedRealtime();
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	void postDelayed(Runnable runnable, long delay) {
+		handler.postDelayed(runnable, delay);
+	}
+
+	void removeCallbacks(Runnable runnable) {
+		handler.removeCallbacks(runnable);
+	}
+}
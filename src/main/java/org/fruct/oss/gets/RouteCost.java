@@ -0,0 +1,29 @@
+package org.fruct.oss.gets;
+
+import java.util.List;
+
+/**
+ * Obstacles along route ordered by route segment and their total cost
+ */
+public class RouteCost {
+	private final List<RouteObstacle> obstacles;
+	private final int totalCost;
+
+	RouteCost(List<RouteObstacle> obstacles) {
+		this.obstacles = obstacles;
+
+		int totalCost = 0;
+		for (RouteObstacle obstacle : obstacles) {
+			totalCost += obstacle.getCost();
+		}
+		this.totalCost = totalCost;
+	}
+
+	public List<RouteObstacle> getObstacles() {
+		return obstacles;
+	}
+
+	public int getTotalCost() {
+		return totalCost;
+	}
+}
@@ -0,0 +1,71 @@
+package org.fruct.oss.gets;
+
+/**
+ * Visible point near route with its cost for active disability
+ */
+public class RouteObstacle {
+	private final String uuid;
+	private final int latE6;
+	private final int lonE6;
+	private final int categoryId;
+	private final int rating;
+	private final int cost;
+	private final int segmentIndex;
+	private final double distance;
+
+	RouteObstacle(String uuid, int latE6, int lonE6, int categoryId, int rating, int cost,
+				  int segmentIndex, double distance) {
+		this.uuid = uuid;
+		this.latE6 = latE6;
+		this.lonE6 = lonE6;
+		this.categoryId = categoryId;
+		this.rating = rating;
+		this.cost = cost;
+		this.segmentIndex = segmentIndex;
+		this.distance = distance;
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	public int getLatE6() {
+		return latE6;
+	}
+
+	public int getLonE6() {
+		return lonE6;
+	}
+
+	public int getCategoryId() {
+		return categoryId;
+	}
+
+	/**
+	 * @return difficulty of point as received from server
+	 */
+	public int getRating() {
+		return rating;
+	}
+
+	/**
+	 * @return factor of disability for category and rating, rating if no disability is active
+	 */
+	public int getCost() {
+		return cost;
+	}
+
+	/**
+	 * @return index of nearest route segment, segment i starts at route point i
+	 */
+	public int getSegmentIndex() {
+		return segmentIndex;
+	}
+
+	/**
+	 * @return distance to nearest route segment in meters
+	 */
+	public double getDistance() {
+		return distance;
+	}
+}
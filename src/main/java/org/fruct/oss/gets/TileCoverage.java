@@ -0,0 +1,72 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.SpatialGrid;
+import org.osmdroid.util.GeoPoint;
+
+/**
+ * Geometry of refresh coverage tiles
+ */
+class TileCoverage {
+	// Keeps tile corners inside fetched circle despite rounding
+	private static final double RADIUS_MARGIN = 1.01;
+
+	private TileCoverage() {
+	}
+
+	/**
+	 * @return coverage tiles intersecting bounding box of circle
+	 */
+	static int[] tilesAround(GeoPoint center, int radius) {
+		double dLat = radius / SpatialGrid.METERS_PER_DEGREE;
+		double dLon = radius / (SpatialGrid.METERS_PER_DEGREE * SpatialGrid.lonScale(center.getLatitude()));
+
+		int minLatIndex = SpatialGrid.latIndex((int) ((center.getLatitude() - dLat) * 1e6), SpatialGrid.COVERAGE_CELL_E6);
+		int maxLatIndex = SpatialGrid.latIndex((int) ((center.getLatitude() + dLat) * 1e6), SpatialGrid.COVERAGE_CELL_E6);
+		int minLonIndex = SpatialGrid.lonIndex((int) ((center.getLongitude() - dLon) * 1e6), SpatialGrid.COVERAGE_CELL_E6);
+		int maxLonIndex = SpatialGrid.lonIndex((int) ((center.getLongitude() + dLon) * 1e6), SpatialGrid.COVERAGE_CELL_E6);
+
+		int[] tiles = new int[(maxLatIndex - minLatIndex + 1) * (maxLonIndex - minLonIndex + 1)];
+		int c = 0;
+		for (int latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+			for (int lonIndex = minLonIndex; lonIndex <= maxLonIndex; lonIndex++) {
+				tiles[c++] = SpatialGrid.tile(latIndex, lonIndex);
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Plan download of circle that contains all given tiles
+	 */
+	static CategoryFetch planFetch(Category category, int[] tiles) {
+		int minLatIndex = Integer.MAX_VALUE, maxLatIndex = Integer.MIN_VALUE;
+		int minLonIndex = Integer.MAX_VALUE, maxLonIndex = Integer.MIN_VALUE;
+
+		for (int tile : tiles) {
+			int latIndex = SpatialGrid.tileLatIndex(tile);
+			int lonIndex = SpatialGrid.tileLonIndex(tile);
+			minLatIndex = Math.min(minLatIndex, latIndex);
+			maxLatIndex = Math.max(maxLatIndex, latIndex);
+			minLonIndex = Math.min(minLonIndex, lonIndex);
+			maxLonIndex = Math.max(maxLonIndex, lonIndex);
+		}
+
+		double minLat = SpatialGrid.cellMinLatE6(minLatIndex, SpatialGrid.COVERAGE_CELL_E6) / 1e6;
+		double maxLat = SpatialGrid.cellMinLatE6(maxLatIndex + 1, SpatialGrid.COVERAGE_CELL_E6) / 1e6;
+		double minLon = SpatialGrid.cellMinLonE6(minLonIndex, SpatialGrid.COVERAGE_CELL_E6) / 1e6;
+		double maxLon = SpatialGrid.cellMinLonE6(maxLonIndex + 1, SpatialGrid.COVERAGE_CELL_E6) / 1e6;
+
+		GeoPoint center = new GeoPoint((minLat + maxLat) / 2, (minLon + maxLon) / 2);
+
+		// Longitude degree is longest at the edge closest to equator
+		double edgeLat = Math.min(Math.abs(minLat), Math.abs(maxLat));
+		if (minLat < 0 && maxLat > 0) {
+			edgeLat = 0;
+		}
+		double halfHeight = (maxLat - minLat) / 2 * SpatialGrid.METERS_PER_DEGREE;
+		double halfWidth = (maxLon - minLon) / 2 * SpatialGrid.METERS_PER_DEGREE * Math.cos(Math.toRadians(edgeLat));
+		int radius = (int) Math.ceil(Math.sqrt(halfHeight * halfHeight + halfWidth * halfWidth) * RADIUS_MARGIN);
+
+		return new CategoryFetch(category, center, radius, tiles);
+	}
+}
@@ -0,0 +1,13 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.HttpTransport;
+
+/**
+ * Points sink which also receives network timing of response it is filled from
+ */
+public interface TimedPointsSink extends PointsSink {
+	/**
+	 * Called after response is closed, even if loading failed
+	 */
+	void onResponseTiming(HttpTransport.Timing timing);
+}
@@ -0,0 +1,14 @@
+package org.fruct.oss.gets;
+
+/**
+ * Points sink which also receives validator of response it is filled from
+ */
+public interface ValidatedPointsSink extends PointsSink {
+	/**
+	 * Called after all points of successful response passed to sink
+	 *
+	 * @param validator opaque validator to pass to next request of the same points,
+	 *                  null if server doesn't support conditional requests
+	 */
+	void onResponseValidator(String validator);
+}
@@ -1,7 +1,6 @@
 package org.fruct.oss.gets.api;
 
-import android.util.Log;
-
+import org.fruct.oss.gets.utils.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
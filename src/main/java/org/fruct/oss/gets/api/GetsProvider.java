@@ -1,22 +1,28 @@
 package org.fruct.oss.gets.api;
 
-import android.util.Xml;
-
 import org.fruct.oss.gets.Category;
 import org.fruct.oss.gets.Disability;
 import org.fruct.oss.gets.Point;
 import org.fruct.oss.gets.PointsException;
 import org.fruct.oss.gets.PointsProvider;
-import org.fruct.oss.gets.PointsService;
+import org.fruct.oss.gets.PointsSink;
+import org.fruct.oss.gets.TimedPointsSink;
+import org.fruct.oss.gets.ValidatedPointsSink;
 import org.fruct.oss.gets.parsers.CategoriesContent;
 import org.fruct.oss.gets.parsers.Kml;
+import org.fruct.oss.gets.utils.HttpTransport;
 import org.fruct.oss.gets.utils.Utils;
+import org.fruct.oss.gets.utils.XmlParsers;
 import org.osmdroid.util.GeoPoint;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 public class GetsProvider implements PointsProvider {
@@ -24,6 +30,7 @@ public class GetsProvider implements PointsProvider {
 	public static String DISABILITIES_LIST;
 
 	private final String authToken;
+	private final HttpTransport transport;
 
 //	static {
 //		if (!BuildConfig.DEBUG) {
@@ -40,6 +47,10 @@ public class GetsProvider implements PointsProvider {
 
 
 	public GetsProvider(String authToken, String serverURI) {
+		this(authToken, serverURI, HttpTransport.getDefault());
+	}
+
+	public GetsProvider(String authToken, String serverURI, HttpTransport transport) {
 		if (GETS_SERVER == null) {
 			GETS_SERVER = serverURI + "/service";
 		}
@@ -47,6 +58,7 @@ public class GetsProvider implements PointsProvider {
 			DISABILITIES_LIST = serverURI + "/config/disabilities.xml";
 		}
 		this.authToken = authToken;
+		this.transport = transport;
 	}
 
 	@Override
@@ -57,7 +69,7 @@ public class GetsProvider implements PointsProvider {
 	@Override
 	public List<Disability> loadDisabilities() throws PointsException {
 		try {
-			String response = Utils.downloadUrl(DISABILITIES_LIST, null);
+			String response = transport.download(DISABILITIES_LIST, null, true);
 			return Disability.parse(new StringReader(response));
 		} catch (Exception ex) {
 			throw new PointsException("Network error during disabilities request", ex);
@@ -66,7 +78,7 @@ public class GetsProvider implements PointsProvider {
 
 	@Override
 	public List<Category> loadCategories() throws PointsException {
-		XmlSerializer serializer = Xml.newSerializer();
+		XmlSerializer serializer = XmlParsers.newSerializer();
 		StringWriter writer = new StringWriter();
 
 		try {
@@ -76,7 +88,7 @@ public class GetsProvider implements PointsProvider {
 				serializer.startTag(null, "auth_token").text(authToken).endTag(null, "auth_token");
 			createRequestBottom(serializer);
 			String request = writer.toString();
-			String response = Utils.downloadUrl(GETS_SERVER + "/getCategories.php", request);
+			String response = transport.download(GETS_SERVER + "/getCategories.php", request, true);
 
 			GetsResponse parsedResponse = GetsResponse.parse(response, CategoriesContent.class);
 
@@ -95,9 +107,24 @@ public class GetsProvider implements PointsProvider {
 
 	@Override
 	public List<Point> loadPoints(Category category, GeoPoint geoPoint) throws PointsException {
-		XmlSerializer serializer = Xml.newSerializer();
+		final List<Point> points = new ArrayList<>();
+		loadPoints(category, geoPoint, DEFAULT_RADIUS, null, new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+				points.add(point);
+			}
+		});
+		return points;
+	}
+
+	@Override
+	public int loadPoints(final Category category, GeoPoint geoPoint, int radius, String validator,
+						  final PointsSink sink) throws PointsException {
+		XmlSerializer serializer = XmlParsers.newSerializer();
 		StringWriter writer = new StringWriter();
 
+		HttpTransport.Response response = null;
+		Reader reader = null;
 		try {
 			serializer.setOutput(writer);
 			createRequestTop(serializer);
@@ -107,7 +134,7 @@ public class GetsProvider implements PointsProvider {
 
 			serializer.startTag(null, "latitude").text(String.valueOf(geoPoint.getLatitude())).endTag(null, "latitude");
 			serializer.startTag(null, "longitude").text(String.valueOf(geoPoint.getLongitude())).endTag(null, "longitude");
-			serializer.startTag(null, "radius").text(String.valueOf(PointsService.POINT_UPDATE_DISTANCE * 4)).endTag(null, "radius");
+			serializer.startTag(null, "radius").text(String.valueOf(radius)).endTag(null, "radius");
 			serializer.startTag(null, "category_id").text(String.valueOf(category.getId())).endTag(null, "category_id");
 
 			if (authToken != null)
@@ -115,31 +142,69 @@ public class GetsProvider implements PointsProvider {
 
 			createRequestBottom(serializer);
 			String request = writer.toString();
-			String response = Utils.downloadUrl(GETS_SERVER + "/loadPoints.php", request);
+			String requestHash = Utils.hashString(request);
+
+			// Validator is sent back only with the same request body, so other area or token never gets 304
+			String etag = null;
+			long lastModified = 0;
+			String[] validatorFields = validator == null ? null : validator.split("\n", -1);
+			if (validatorFields != null && validatorFields.length == 3 && validatorFields[0].equals(requestHash)) {
+				etag = validatorFields[1].isEmpty() ? null : validatorFields[1];
+				lastModified = parseLong(validatorFields[2]);
+			}
 
-			GetsResponse parsedResponse = GetsResponse.parse(response, Kml.class);
+			response = transport.open(GETS_SERVER + "/loadPoints.php", request, etag, lastModified);
+			if (response.isNotModified()) {
+				return NOT_MODIFIED;
+			}
+
+			reader = new BufferedReader(new InputStreamReader(response.getInputStream(), "UTF-8"));
+
+			final int[] count = new int[1];
+			GetsResponse parsedResponse = GetsResponse.parsePoints(reader, new PointsSink() {
+				@Override
+				public void addPoint(Point point) throws IOException {
+					point.setProvider(Point.GETS_PROVIDER);
+					point.setCategory(category);
+					sink.addPoint(point);
+					count[0]++;
+				}
+			});
 
 			if (parsedResponse.getCode() != 0) {
 				throw new PointsException("Gets server return error code "
 						+ parsedResponse.getCode() + ": " + parsedResponse.getMessage());
 			}
 
-			List<Point> points = ((Kml) parsedResponse.getContent()).getPoints();
-			for (Point point : points) {
-				point.setProvider(Point.GETS_PROVIDER);
-				point.setCategory(category);
+			if (sink instanceof ValidatedPointsSink) {
+				// ETag and Last-Modified are server values, client clock is never compared with them
+				String newValidator = null;
+				if (response.getETag() != null || response.getLastModified() > 0) {
+					newValidator = requestHash + "\n" + (response.getETag() == null ? "" : response.getETag())
+							+ "\n" + response.getLastModified();
+				}
+				((ValidatedPointsSink) sink).onResponseValidator(newValidator);
 			}
-			return points;
+
+			return count[0];
 		} catch (IOException ex) {
 			throw new PointsException("Network error during points request", ex);
 		} catch (GetsException ex) {
 			throw new PointsException("Gets server return incorrect answer during points request", ex);
+		} finally {
+			Utils.silentClose(reader);
+			if (response != null) {
+				response.close();
+				if (sink instanceof TimedPointsSink) {
+					((TimedPointsSink) sink).onResponseTiming(response.getTiming());
+				}
+			}
 		}
 	}
 
 	@Override
 	public String uploadPoint(Point point) throws PointsException {
-		XmlSerializer serializer = Xml.newSerializer();
+		XmlSerializer serializer = XmlParsers.newSerializer();
 		StringWriter writer = new StringWriter();
 
 		try {
@@ -148,7 +213,7 @@ public class GetsProvider implements PointsProvider {
 
 			serializer.startTag(null, "auth_token").text(authToken).endTag(null, "auth_token");
 			serializer.startTag(null, "category_id").text(String.valueOf(point.getCategory().getId())).endTag(null, "category_id");
-			serializer.startTag(null, "title").text(point.getName()).endTag(null, "title");
+			serializer.startTag(null, "title").text(point.getRawName()).endTag(null, "title");
 			serializer.startTag(null, "link").text(point.getUrl()).endTag(null, "link");
 			serializer.startTag(null, "latitude").text(String.valueOf(point.getLat())).endTag(null, "latitude");
 			serializer.startTag(null, "longitude").text(String.valueOf(point.getLon())).endTag(null, "longitude");
@@ -160,7 +225,7 @@ public class GetsProvider implements PointsProvider {
 			createRequestBottom(serializer);
 
 			String request = writer.toString();
-			String response = Utils.downloadUrl(GETS_SERVER + "/addPoint.php", request);
+			String response = transport.download(GETS_SERVER + "/addPoint.php", request, false);
 
 			GetsResponse parsedResponse = GetsResponse.parse(response, Kml.class);
 
@@ -175,6 +240,14 @@ public class GetsProvider implements PointsProvider {
 		}
 	}
 
+	private static long parseLong(String str) {
+		try {
+			return Long.parseLong(str);
+		} catch (NumberFormatException ex) {
+			return 0;
+		}
+	}
+
 	private void createRequestTop(XmlSerializer xmlSerializer) throws IOException {
 		xmlSerializer.startDocument("UTF-8", true);
 		xmlSerializer.startTag(null, "request").startTag(null, "params");
@@ -1,7 +1,6 @@
 package org.fruct.oss.gets.api;
 
-import android.util.Xml;
-
+import org.fruct.oss.gets.PointsSink;
 import org.fruct.oss.gets.parsers.AuthParameters;
 import org.fruct.oss.gets.parsers.AuthRedirectResponse;
 import org.fruct.oss.gets.parsers.CategoriesContent;
@@ -9,11 +8,13 @@ import org.fruct.oss.gets.parsers.IContent;
 import org.fruct.oss.gets.parsers.Kml;
 import org.fruct.oss.gets.parsers.TokenContent;
 import org.fruct.oss.gets.parsers.UserInfo;
+import org.fruct.oss.gets.utils.XmlParsers;
 import org.fruct.oss.gets.utils.XmlUtil;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
@@ -86,36 +87,51 @@ public class GetsResponse {
 
 	public static GetsResponse parse(String responseXml, Class<? extends IContent> contentClass) throws GetsException {
 		try {
-			//XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
-			XmlPullParser parser = Xml.newPullParser();
-
-			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
-			parser.setInput(new StringReader(responseXml));
-			parser.nextTag();
-			return readGetsResponse(parser, contentClass);
+			return parse(new StringReader(responseXml), contentParsers.get(contentClass));
 		} catch (XmlPullParserException | IOException e) {
 			throw new GetsException(e);
 		}
 	}
 
-	private static GetsResponse readGetsResponse(XmlPullParser parser, Class<? extends IContent> contentClass) throws IOException, XmlPullParserException {
+	/**
+	 * Parse KML response directly from stream passing each placemark to sink.
+	 * Content of returned response is empty {@link Kml}.
+	 */
+	public static GetsResponse parsePoints(Reader reader, final PointsSink sink) throws IOException, GetsException {
+		try {
+			return parse(reader, new ContentParser() {
+				@Override
+				public IContent parse(XmlPullParser parser) throws IOException, XmlPullParserException {
+					return Kml.parse(parser, sink);
+				}
+			});
+		} catch (XmlPullParserException e) {
+			throw new GetsException(e);
+		}
+	}
+
+	private static GetsResponse parse(Reader reader, ContentParser contentParser) throws IOException, XmlPullParserException {
+		XmlPullParser parser = XmlParsers.newPullParser();
+
+		parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+		parser.setInput(reader);
+		parser.nextTag();
+		return readGetsResponse(parser, contentParser);
+	}
+
+	private static GetsResponse readGetsResponse(XmlPullParser parser, ContentParser contentParser) throws IOException, XmlPullParserException {
 		GetsResponse resp = new GetsResponse();
 		parser.require(XmlPullParser.START_TAG, null, "response");
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
 			String tagName = parser.getName();
 			if (tagName.equals("status")) {
 				readStatus(resp, parser);
-			} else if (tagName.equals("content") && contentClass != null) {
-				ContentParser contentParser = contentParsers.get(contentClass);
-				if (contentParser == null) {
-					XmlUtil.skip(parser);
-				} else {
-					resp.content = contentParser.parse(parser);
-				}
+			} else if (tagName.equals("content") && contentParser != null) {
+				resp.content = contentParser.parse(parser);
 			} else {
 				XmlUtil.skip(parser);
 			}
@@ -126,7 +142,7 @@ public class GetsResponse {
 
 	private static void readStatus(GetsResponse out, XmlPullParser parser) throws IOException, XmlPullParserException {
 		parser.require(XmlPullParser.START_TAG, null, "status");
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
@@ -23,7 +23,7 @@ public class AuthParameters implements IContent {
 		parser.require(XmlPullParser.START_TAG, null, "content");
 		AuthParameters content = new AuthParameters();
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
@@ -23,7 +23,7 @@ public class AuthRedirectResponse implements IContent {
 		parser.require(XmlPullParser.START_TAG, null, "content");
 		AuthRedirectResponse content = new AuthRedirectResponse();
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
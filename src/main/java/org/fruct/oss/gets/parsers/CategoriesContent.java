@@ -24,7 +24,7 @@ public class CategoriesContent implements IContent {
 
 		CategoriesContent content = new CategoriesContent();
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
@@ -53,7 +53,7 @@ public class CategoriesContent implements IContent {
 
 		parser.require(XmlPullParser.START_TAG, null, "category");
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
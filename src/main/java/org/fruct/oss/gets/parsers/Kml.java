@@ -1,6 +1,7 @@
 package org.fruct.oss.gets.parsers;
 
 import org.fruct.oss.gets.Point;
+import org.fruct.oss.gets.PointsSink;
 import org.fruct.oss.gets.api.GetsResponse;
 import org.fruct.oss.gets.utils.XmlUtil;
 import org.xmlpull.v1.XmlPullParser;
@@ -8,6 +9,7 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Kml implements IContent {
@@ -34,8 +36,26 @@ public class Kml implements IContent {
 	private List<Point> points;
 
 	public static IContent parse(XmlPullParser parser) throws IOException, XmlPullParserException {
+		final ArrayList<Point> points = new ArrayList<Point>();
+
+		Kml kml = parse(parser, new PointsSink() {
+			@Override
+			public void addPoint(Point point) {
+				points.add(point);
+			}
+		});
+
+		//Collections.sort(points);
+
+		kml.points = points;
+		return kml;
+	}
+
+	/**
+	 * Parse placemarks one by one into sink without collecting them
+	 */
+	public static Kml parse(XmlPullParser parser, PointsSink sink) throws IOException, XmlPullParserException {
 		Kml kml = new Kml();
-		ArrayList<Point> points = new ArrayList<Point>();
 
 		parser.require(XmlPullParser.START_TAG, null, "content");
 		parser.nextTag();
@@ -43,7 +63,7 @@ public class Kml implements IContent {
 		parser.nextTag();
 		parser.require(XmlPullParser.START_TAG, null, "Document");
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
@@ -58,7 +78,7 @@ public class Kml implements IContent {
 				parser.require(XmlPullParser.END_TAG, null, "open");
 				break;
 			case "Placemark":
-				points.add(Point.parse(parser));
+				sink.addPoint(Point.parse(parser));
 				parser.require(XmlPullParser.END_TAG, null, "Placemark");
 				break;
 			default:
@@ -73,9 +93,7 @@ public class Kml implements IContent {
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, null, "content");
 
-		//Collections.sort(points);
-
-		kml.points = points;
+		kml.points = Collections.emptyList();
 		return kml;
 	}
 
@@ -65,7 +65,7 @@ public class UserInfo implements IContent {
 
 		UserInfo userInfo = new UserInfo();
 
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (XmlUtil.next(parser) != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG)
 				continue;
 
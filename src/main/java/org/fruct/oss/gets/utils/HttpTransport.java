@@ -0,0 +1,378 @@
+package org.fruct.oss.gets.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP transport shared by requests to GeTS server.
+ *
+ * Connections are never disconnected explicitly, so that fully read responses return
+ * their sockets to the keep-alive pool. Responses are requested gzipped.
+ * Cacheable responses are stored on disk and revalidated with ETag and If-Modified-Since.
+ */
+public class HttpTransport {
+	private static final String TAG = "HttpTransport";
+
+	private static final String USER_AGENT = "RoadSigns/0.2 (http://oss.fruct.org/projects/roadsigns/)";
+	private static final int TIMEOUT = 10000;
+
+	private static HttpTransport defaultTransport;
+
+	private final File cacheDir;
+
+	/**
+	 * @param cacheDir directory for cached responses, null disables response cache
+	 */
+	public HttpTransport(File cacheDir) {
+		if (cacheDir != null && !cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			Log.w(TAG, "Can't create response cache directory " + cacheDir);
+			cacheDir = null;
+		}
+
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * @return shared transport without response cache
+	 */
+	public static synchronized HttpTransport getDefault() {
+		if (defaultTransport == null) {
+			defaultTransport = new HttpTransport(null);
+		}
+		return defaultTransport;
+	}
+
+	/**
+	 * Download whole response as string
+	 *
+	 * @param postQuery request body, null for GET request
+	 * @param cacheable store response and revalidate it on next request
+	 */
+	public String download(String urlString, String postQuery, boolean cacheable) throws IOException {
+		File bodyFile = null;
+		File metaFile = null;
+		String etag = null;
+		long lastModified = 0;
+
+		if (cacheable && cacheDir != null) {
+			String key = Utils.hashString(urlString + "\n" + postQuery);
+			bodyFile = new File(cacheDir, key);
+			metaFile = new File(cacheDir, key + ".meta");
+
+			if (bodyFile.isFile() && metaFile.isFile()) {
+				BufferedReader metaReader = new BufferedReader(new InputStreamReader(new FileInputStream(metaFile), "UTF-8"));
+				try {
+					etag = metaReader.readLine();
+					lastModified = Long.parseLong(metaReader.readLine());
+				} catch (NumberFormatException | NullPointerException ex) {
+					etag = null;
+				} finally {
+					metaReader.close();
+				}
+
+				if (etag != null && etag.isEmpty()) {
+					etag = null;
+				}
+			}
+		}
+
+		String body;
+		Response response = open(urlString, postQuery, etag, lastModified);
+		try {
+			if (response.isNotModified() && bodyFile != null) {
+				Log.v(TAG, "Response not modified " + urlString);
+				return readCached(bodyFile);
+			}
+
+			body = Utils.inputStreamToString(response.getInputStream());
+		} finally {
+			response.close();
+		}
+
+		if (bodyFile != null && (response.getETag() != null || response.getLastModified() > 0)) {
+			storeCached(bodyFile, metaFile, body, response.getETag(), response.getLastModified());
+		}
+
+		return body;
+	}
+
+	public Response open(String urlString, String postQuery) throws IOException {
+		return open(urlString, postQuery, null, 0);
+	}
+
+	/**
+	 * Send request and return response ready to read.
+	 * Response must be closed to return connection to pool.
+	 *
+	 * @param etag value for If-None-Match header or null
+	 * @param ifModifiedSince value for If-Modified-Since header, 0 to skip
+	 */
+	public Response open(String urlString, String postQuery, String etag, long ifModifiedSince) throws IOException {
+		long startTime = System.nanoTime();
+
+		URL url = new URL(urlString);
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setReadTimeout(TIMEOUT);
+		conn.setConnectTimeout(TIMEOUT);
+		conn.setRequestMethod(postQuery == null ? "GET" : "POST");
+		conn.setDoInput(true);
+		conn.setDoOutput(postQuery != null);
+		conn.setRequestProperty("User-Agent", USER_AGENT);
+		conn.setRequestProperty("Content-Type", "Content-Type: text/xml;charset=utf-8");
+		conn.setRequestProperty("Accept-Encoding", "gzip");
+
+		if (etag != null) {
+			conn.setRequestProperty("If-None-Match", etag);
+		}
+		if (ifModifiedSince > 0) {
+			conn.setIfModifiedSince(ifModifiedSince);
+		}
+
+		try {
+			if (postQuery != null) {
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(conn.getOutputStream(), "UTF-8"));
+				writer.write(postQuery);
+				writer.flush();
+				writer.close();
+			}
+
+			Log.v(TAG, "Request url " + urlString);
+			int responseCode = conn.getResponseCode();
+			long connectTime = System.nanoTime() - startTime;
+
+			return new Response(urlString, conn, responseCode, connectTime);
+		} catch (IOException ex) {
+			conn.disconnect();
+			throw ex;
+		}
+	}
+
+	private static String readCached(File bodyFile) throws IOException {
+		InputStream input = new FileInputStream(bodyFile);
+		try {
+			return Utils.inputStreamToString(input);
+		} finally {
+			input.close();
+		}
+	}
+
+	private void storeCached(File bodyFile, File metaFile, String body, String etag, long lastModified) {
+		File tmpBody = null;
+		File tmpMeta = null;
+		try {
+			tmpBody = File.createTempFile("response", ".tmp", cacheDir);
+			tmpMeta = File.createTempFile("response", ".tmp", cacheDir);
+
+			writeString(tmpBody, body);
+			writeString(tmpMeta, (etag == null ? "" : etag) + "\n" + lastModified + "\n");
+
+			if (!tmpBody.renameTo(bodyFile) || !tmpMeta.renameTo(metaFile)) {
+				metaFile.delete();
+			}
+		} catch (IOException ex) {
+			Log.w(TAG, "Can't store response: " + ex.getMessage());
+		} finally {
+			if (tmpBody != null)
+				tmpBody.delete();
+			if (tmpMeta != null)
+				tmpMeta.delete();
+		}
+	}
+
+	private static void writeString(File file, String str) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.write(str);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Duration of request phases
+	 */
+	public static class Timing {
+		private final long connectNanos;
+		private final long transferNanos;
+		private final long readNanos;
+		private final long bytes;
+
+		Timing(long connectNanos, long transferNanos, long readNanos, long bytes) {
+			this.connectNanos = connectNanos;
+			this.transferNanos = transferNanos;
+			this.readNanos = readNanos;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * @return time from request start to response status: DNS, connect, upload and server processing
+		 */
+		public long getConnectNanos() {
+			return connectNanos;
+		}
+
+		/**
+		 * @return time spent reading response body until response closed
+		 */
+		public long getTransferNanos() {
+			return transferNanos;
+		}
+
+		/**
+		 * @return part of transfer time spent waiting for network, the rest is spent by consumer of body
+		 */
+		public long getReadNanos() {
+			return readNanos;
+		}
+
+		/**
+		 * @return response bytes received from network, before decompression
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		@Override
+		public String toString() {
+			return "connect " + connectNanos / 1000000 + " ms, transfer " + transferNanos / 1000000
+					+ " ms (read " + readNanos / 1000000 + " ms), " + bytes + " bytes";
+		}
+	}
+
+	public static class Response implements Closeable {
+		private final String url;
+		private final HttpURLConnection conn;
+		private final int code;
+		private final long connectNanos;
+		private final long transferStartTime;
+
+		private CountingInputStream countingStream;
+		private InputStream inputStream;
+		private Timing timing;
+
+		private Response(String url, HttpURLConnection conn, int code, long connectNanos) {
+			this.url = url;
+			this.conn = conn;
+			this.code = code;
+			this.connectNanos = connectNanos;
+			this.transferStartTime = System.nanoTime();
+		}
+
+		public int getCode() {
+			return code;
+		}
+
+		public boolean isNotModified() {
+			return code == HttpURLConnection.HTTP_NOT_MODIFIED;
+		}
+
+		public String getETag() {
+			return conn.getHeaderField("ETag");
+		}
+
+		public long getLastModified() {
+			return conn.getLastModified();
+		}
+
+		/**
+		 * @return decompressed response body, empty for 304 response
+		 */
+		public InputStream getInputStream() throws IOException {
+			if (inputStream != null) {
+				return inputStream;
+			}
+
+			if (isNotModified()) {
+				inputStream = new ByteArrayInputStream(new byte[0]);
+				return inputStream;
+			}
+
+			countingStream = new CountingInputStream(conn.getInputStream());
+			if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+				inputStream = new GZIPInputStream(countingStream);
+			} else {
+				inputStream = countingStream;
+			}
+
+			return inputStream;
+		}
+
+		/**
+		 * @return request timing, available after response closed
+		 */
+		public Timing getTiming() {
+			return timing;
+		}
+
+		@Override
+		public void close() {
+			if (timing != null) {
+				return;
+			}
+
+			if (inputStream != null) {
+				Utils.silentClose(inputStream);
+			} else if (!isNotModified()) {
+				// Body not requested, connection can't be reused
+				conn.disconnect();
+			}
+
+			timing = new Timing(connectNanos, System.nanoTime() - transferStartTime,
+					countingStream == null ? 0 : countingStream.nanos,
+					countingStream == null ? 0 : countingStream.count);
+			Log.v(TAG, "Response code " + code + " " + url + ": " + timing);
+		}
+	}
+
+	/**
+	 * Counts bytes and time spent in reads of underlying stream
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+		private long nanos;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			long startTime = System.nanoTime();
+			int b = super.read();
+			nanos += System.nanoTime() - startTime;
+			if (b >= 0)
+				count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			long startTime = System.nanoTime();
+			int read = super.read(buffer, offset, length);
+			nanos += System.nanoTime() - startTime;
+			if (read > 0)
+				count += read;
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.fruct.oss.gets.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Resolves names received from GeTS server.
+ *
+ * Server sends name as json object <code>{"name": "Stairs", "name_ru": "Лестница"}</code>,
+ * names of locally created objects are plain strings.
+ */
+public class LocalizedNames {
+	private static final String DEFAULT_KEY = "name";
+
+	private LocalizedNames() {
+	}
+
+	/**
+	 * @param rawName json with names or plain name
+	 * @param language ISO 639 language code or null for default name
+	 * @return name for language, default name if there is no such translation,
+	 * rawName itself if it is not a json object
+	 */
+	public static String resolve(String rawName, String language) {
+		if (rawName == null || rawName.indexOf('{') < 0) {
+			return rawName;
+		}
+
+		JSONObject json;
+		try {
+			json = new JSONObject(rawName);
+		} catch (JSONException ex) {
+			return rawName;
+		}
+
+		if (language != null) {
+			String localName = json.optString(DEFAULT_KEY + "_" + language, null);
+			if (localName != null) {
+				return localName;
+			}
+		}
+
+		return json.optString(DEFAULT_KEY, rawName);
+	}
+}
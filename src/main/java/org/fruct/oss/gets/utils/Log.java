@@ -0,0 +1,30 @@
+package org.fruct.oss.gets.utils;
+
+/**
+ * Logging of code shared with gets-core. This implementation writes to logcat,
+ * gets-core replaces it with one writing to java.util.logging.
+ */
+public final class Log {
+	private Log() {
+	}
+
+	public static void v(String tag, String msg) {
+		android.util.Log.v(tag, msg);
+	}
+
+	public static void d(String tag, String msg) {
+		android.util.Log.d(tag, msg);
+	}
+
+	public static void i(String tag, String msg) {
+		android.util.Log.i(tag, msg);
+	}
+
+	public static void w(String tag, String msg) {
+		android.util.Log.w(tag, msg);
+	}
+
+	public static void e(String tag, String msg) {
+		android.util.Log.e(tag, msg);
+	}
+}
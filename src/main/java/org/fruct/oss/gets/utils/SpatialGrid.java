@@ -0,0 +1,110 @@
+package org.fruct.oss.gets.utils;
+
+/**
+ * Regular latitude/longitude grid used as a spatial key for stored points.
+ *
+ * Tile key is latitude-major: <code>latIndex << 16 | lonIndex</code>, so one row of tiles
+ * with the same latitude index is a contiguous range of keys.
+ * Cell size must be at least {@link #MIN_CELL_E6} to keep longitude index in 16 bits.
+ */
+public class SpatialGrid {
+	public static final int MIN_CELL_E6 = 5494;
+
+	// 0.01 degree, about 1.1 km by latitude
+	public static final int POINT_CELL_E6 = 10000;
+
+	// 0.02 degree, cell of refresh coverage tracking
+	public static final int COVERAGE_CELL_E6 = 20000;
+
+	public static final double METERS_PER_DEGREE = 111320;
+
+	private static final int LAT_OFFSET_E6 = 90000000;
+	private static final int LON_OFFSET_E6 = 180000000;
+
+	private SpatialGrid() {
+	}
+
+	public static int latIndex(int latE6, int cellE6) {
+		return (clamp(latE6, -LAT_OFFSET_E6, LAT_OFFSET_E6) + LAT_OFFSET_E6) / cellE6;
+	}
+
+	public static int lonIndex(int lonE6, int cellE6) {
+		return (clamp(lonE6, -LON_OFFSET_E6, LON_OFFSET_E6) + LON_OFFSET_E6) / cellE6;
+	}
+
+	public static int tile(int latIndex, int lonIndex) {
+		return (latIndex << 16) | lonIndex;
+	}
+
+	public static int tileOf(int latE6, int lonE6, int cellE6) {
+		return tile(latIndex(latE6, cellE6), lonIndex(lonE6, cellE6));
+	}
+
+	public static int tileLatIndex(int tile) {
+		return tile >>> 16;
+	}
+
+	public static int tileLonIndex(int tile) {
+		return tile & 0xffff;
+	}
+
+	public static int cellMinLatE6(int latIndex, int cellE6) {
+		return latIndex * cellE6 - LAT_OFFSET_E6;
+	}
+
+	public static int cellMinLonE6(int lonIndex, int cellE6) {
+		return lonIndex * cellE6 - LON_OFFSET_E6;
+	}
+
+	/**
+	 * @return length of longitude degree relative to latitude degree at given latitude
+	 */
+	public static double lonScale(double lat) {
+		return Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+	}
+
+	/**
+	 * Squared distance in meters in equirectangular projection, accurate for short distances
+	 *
+	 * @param lonScale {@link #lonScale(double)} near points
+	 */
+	public static double projectedDistanceSquared(int latE6a, int lonE6a, int latE6b, int lonE6b, double lonScale) {
+		double dy = (latE6a - latE6b) * (METERS_PER_DEGREE / 1e6);
+		double dx = (lonE6a - lonE6b) * (METERS_PER_DEGREE / 1e6) * lonScale;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Squared distance in meters from point to segment AB in equirectangular projection
+	 *
+	 * @param lonScale {@link #lonScale(double)} near segment
+	 */
+	public static double projectedSegmentDistanceSquared(int latE6, int lonE6, int latE6a, int lonE6a,
+														 int latE6b, int lonE6b, double lonScale) {
+		double scale = METERS_PER_DEGREE / 1e6;
+		double px = (lonE6 - lonE6a) * scale * lonScale;
+		double py = (latE6 - latE6a) * scale;
+		double sx = (lonE6b - lonE6a) * scale * lonScale;
+		double sy = (latE6b - latE6a) * scale;
+
+		double lengthSquared = sx * sx + sy * sy;
+		double t = lengthSquared == 0 ? 0 : (px * sx + py * sy) / lengthSquared;
+		t = Math.max(0, Math.min(1, t));
+
+		double dx = px - t * sx;
+		double dy = py - t * sy;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * SQL expression that computes tile key of point grid from integer lat and lon columns
+	 */
+	public static String tileSqlExpression(String latColumn, String lonColumn, int cellE6) {
+		return "(((" + latColumn + " + " + LAT_OFFSET_E6 + ") / " + cellE6 + ") << 16) | "
+				+ "((" + lonColumn + " + " + LON_OFFSET_E6 + ") / " + cellE6 + ")";
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return value < min ? min : (value > max ? max : value);
+	}
+}
@@ -2,13 +2,7 @@ package org.fruct.oss.gets.utils;
 
 import android.content.Context;
 import android.os.Environment;
-import android.util.Log;
-import android.view.View;
-import android.view.ViewGroup;
-import android.view.animation.Animation;
-import android.view.animation.Transformation;
 
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -16,7 +10,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -162,44 +155,7 @@ public class Utils {
 	}
 
 	public static String downloadUrl(String urlString, String postQuery) throws IOException {
-		HttpURLConnection conn = null;
-		InputStream responseStream = null;
-
-		try {
-			URL url = new URL(urlString);
-			conn = (HttpURLConnection) url.openConnection();
-			conn.setReadTimeout(10000);
-			conn.setConnectTimeout(10000);
-			conn.setRequestMethod(postQuery == null ? "GET" : "POST");
-			conn.setDoInput(true);
-			conn.setDoOutput(postQuery != null);
-			conn.setRequestProperty("User-Agent", "RoadSigns/0.2 (http://oss.fruct.org/projects/roadsigns/)");
-			conn.setRequestProperty("Content-Type", "Content-Type: text/xml;charset=utf-8");
-
-			if (postQuery != null) {
-				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(conn.getOutputStream(), "UTF-8"));
-				writer.write(postQuery);
-				writer.flush();
-				writer.close();
-			}
-
-			Log.v(UTILS_CLASS, "Request url " + urlString);
-			conn.connect();
-
-			int responseCode = conn.getResponseCode();
-			responseStream = conn.getInputStream();
-			String response = Utils.inputStreamToString(responseStream);
-
-			Log.v(UTILS_CLASS, "Response code " + responseCode + ", size " + response.length());
-
-			return response;
-		} finally {
-			if (conn != null)
-				conn.disconnect();
-
-			if (responseStream != null)
-				responseStream.close();
-		}
+		return HttpTransport.getDefault().download(urlString, postQuery, false);
 	}
 
 	public static HttpURLConnection getConnection(String urlStr) throws IOException {
@@ -260,61 +216,6 @@ public class Utils {
 		}
 	}
 
-	// http://stackoverflow.com/questions/4946295/android-expand-collapse-animation
-	public static void expand(final View v) {
-		v.measure(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-		final int targetHeight = v.getMeasuredHeight();
-		Log.d(UTILS_CLASS, "Expand height = " + targetHeight);
-
-		v.getLayoutParams().height = 0;
-		v.setVisibility(View.VISIBLE);
-		Animation a = new Animation()
-		{
-			@Override
-			protected void applyTransformation(float interpolatedTime, Transformation t) {
-				v.getLayoutParams().height = interpolatedTime == 1
-						? ViewGroup.LayoutParams.WRAP_CONTENT
-						: (int)(targetHeight * interpolatedTime);
-				v.requestLayout();
-			}
-
-			@Override
-			public boolean willChangeBounds() {
-				return true;
-			}
-		};
-
-		// 1dp/ms
-		a.setDuration((int)(targetHeight / v.getContext().getResources().getDisplayMetrics().density));
-		v.startAnimation(a);
-	}
-
-	public static void collapse(final View v) {
-		final int initialHeight = v.getMeasuredHeight();
-
-		Animation a = new Animation()
-		{
-			@Override
-			protected void applyTransformation(float interpolatedTime, Transformation t) {
-				if(interpolatedTime == 1){
-					v.setVisibility(View.GONE);
-				}else{
-					v.getLayoutParams().height = initialHeight - (int)(initialHeight * interpolatedTime);
-					v.requestLayout();
-				}
-			}
-
-			@Override
-			public boolean willChangeBounds() {
-				return true;
-			}
-		};
-
-		// 1dp/ms
-		a.setDuration((int)(initialHeight / v.getContext().getResources().getDisplayMetrics().density));
-		v.startAnimation(a);
-	}
-
 	public static String[] getSecondaryDirs() {
 		List<String> ret = new ArrayList<String>();
 		String secondaryStorageString = System.getenv("SECONDARY_STORAGE");
@@ -0,0 +1,70 @@
+package org.fruct.oss.gets.utils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+
+/**
+ * Source of pull parsers and serializers for GeTS requests and responses.
+ *
+ * By default they are created by {@link XmlPullParserFactory}, which is part of Android
+ * and is provided by kXML2 on plain JVM. Other implementation can be installed by {@link #setFactory(Factory)}.
+ */
+public class XmlParsers {
+	public interface Factory {
+		XmlPullParser newPullParser() throws XmlPullParserException;
+
+		XmlSerializer newSerializer() throws XmlPullParserException, IOException;
+	}
+
+	private static volatile Factory factory;
+
+	private XmlParsers() {
+	}
+
+	/**
+	 * @param factory factory of parsers or null to restore default one
+	 */
+	public static void setFactory(Factory factory) {
+		XmlParsers.factory = factory;
+	}
+
+	public static XmlPullParser newPullParser() throws XmlPullParserException {
+		return getFactory().newPullParser();
+	}
+
+	/**
+	 * @throws IllegalStateException if there is no serializer implementation
+	 */
+	public static XmlSerializer newSerializer() {
+		try {
+			return getFactory().newSerializer();
+		} catch (XmlPullParserException | IOException ex) {
+			throw new IllegalStateException("Can't create xml serializer", ex);
+		}
+	}
+
+	private static Factory getFactory() throws XmlPullParserException {
+		Factory factory = XmlParsers.factory;
+		if (factory == null) {
+			// Factory lookup reads classpath resources, so it is done once
+			final XmlPullParserFactory pullParserFactory = XmlPullParserFactory.newInstance();
+			factory = new Factory() {
+				@Override
+				public XmlPullParser newPullParser() throws XmlPullParserException {
+					return pullParserFactory.newPullParser();
+				}
+
+				@Override
+				public XmlSerializer newSerializer() throws XmlPullParserException, IOException {
+					return pullParserFactory.newSerializer();
+				}
+			};
+			XmlParsers.factory = factory;
+		}
+		return factory;
+	}
+}
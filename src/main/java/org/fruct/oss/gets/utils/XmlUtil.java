@@ -6,6 +6,18 @@ import org.xmlpull.v1.XmlPullParserException;
 import java.io.IOException;
 
 public class XmlUtil {
+	/**
+	 * Advance parser inside element. Truncated document fails instead of repeating
+	 * {@link XmlPullParser#END_DOCUMENT}, which loops waiting for end tag never see.
+	 */
+	public static int next(XmlPullParser parser) throws XmlPullParserException, IOException {
+		int eventType = parser.next();
+		if (eventType == XmlPullParser.END_DOCUMENT) {
+			throw new XmlPullParserException("Unexpected end of document", parser, null);
+		}
+		return eventType;
+	}
+
 	public static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
 		int depth = 1;
 
@@ -14,7 +26,7 @@ public class XmlUtil {
 		}
 
 		while (depth > 0) {
-			switch (parser.next()) {
+			switch (next(parser)) {
 			case XmlPullParser.START_TAG:
 				depth++;
 				break;
@@ -0,0 +1,92 @@
+package org.fruct.oss.gets;
+
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedPointsSinkTest {
+	private final Category category = new Category("category", "", "", "", 1, true);
+	private final CategoryFetch fetch = new CategoryFetch(category, new GeoPoint(61.78, 34.35), 1000, new int[0]);
+
+	@Test
+	public void pointsAreGroupedInChunks() throws InterruptedIOException {
+		BlockingQueue<PointsChunk> queue = new LinkedBlockingQueue<>();
+		ChunkedPointsSink sink = new ChunkedPointsSink(queue, fetch, 4);
+
+		for (int i = 0; i < 10; i++) {
+			sink.addPoint(createPoint(i));
+		}
+		assertEquals(2, queue.size());
+
+		sink.finish();
+		assertEquals(3, queue.size());
+
+		int index = 0;
+		int[] sizes = { 4, 4, 2 };
+		for (int i = 0; i < sizes.length; i++) {
+			PointsChunk chunk = queue.poll();
+			assertSame(fetch, chunk.getFetch());
+			assertEquals(i == sizes.length - 1, chunk.isLast());
+			assertEquals(sizes[i], chunk.getPoints().size());
+			for (Point point : chunk.getPoints()) {
+				assertEquals("uuid" + index++, point.getUuid());
+			}
+		}
+
+		assertEquals(10, fetch.toMetrics(System.nanoTime()).getPointsParsed());
+	}
+
+	@Test
+	public void lastChunkIsSentWithoutPoints() throws InterruptedIOException {
+		BlockingQueue<PointsChunk> queue = new LinkedBlockingQueue<>();
+		ChunkedPointsSink sink = new ChunkedPointsSink(queue, fetch, 4);
+
+		for (int i = 0; i < 4; i++) {
+			sink.addPoint(createPoint(i));
+		}
+		sink.finish();
+
+		assertEquals(2, queue.size());
+		assertFalse(queue.poll().isLast());
+		PointsChunk last = queue.poll();
+		assertTrue(last.isLast());
+		assertTrue(last.getPoints().isEmpty());
+	}
+
+	@Test
+	public void validatorIsPassedToFetch() {
+		ChunkedPointsSink sink = new ChunkedPointsSink(new LinkedBlockingQueue<PointsChunk>(), fetch, 4);
+		sink.onResponseValidator("validator");
+
+		assertEquals("validator", fetch.getReceivedValidator());
+	}
+
+	@Test
+	public void interruptedPutFailsParser() {
+		BlockingQueue<PointsChunk> queue = new ArrayBlockingQueue<>(1);
+		ChunkedPointsSink sink = new ChunkedPointsSink(queue, fetch, 1);
+
+		Thread.currentThread().interrupt();
+		try {
+			sink.addPoint(createPoint(0));
+			fail("Interrupted sink accepted point");
+		} catch (InterruptedIOException ignored) {
+			// Interrupt is restored for caller
+			assertTrue(Thread.interrupted());
+		}
+	}
+
+	private Point createPoint(int index) {
+		return new Point("point" + index, "", "", 61.0, 34.0, category, "provider", "uuid" + index, 0);
+	}
+}
@@ -0,0 +1,117 @@
+package org.fruct.oss.gets;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CostModelTest {
+	// Factors are five ratings per category in order of categories
+	private static final Disability WHEELCHAIR = new Disability("wheelchair", new int[] { 1, 2 },
+			new int[] { 1, 2, 3, 4, 5, 10, 20, 30, 40, 50 });
+	private static final Disability BLIND = new Disability("blind", new int[] { 2, 3 },
+			new int[] { 5, 5, 5, 5, 5, 7, 7, 7, 7, 7 });
+
+	@Test
+	public void withoutDisabilitiesCostIsRating() {
+		CostModel model = CostModel.compile(Collections.<Disability>emptyList(), CostModel.COMBINE_MAX);
+
+		assertSame(CostModel.identity(), model);
+		assertTrue(model.isIdentity());
+		assertEquals(4, model.getCost(100, 4));
+	}
+
+	@Test
+	public void singleDisabilityUsesItsFactors() {
+		CostModel model = CostModel.compile(Collections.singletonList(WHEELCHAIR), CostModel.COMBINE_MAX);
+
+		assertFalse(model.isIdentity());
+		for (int categoryId : new int[] { 1, 2 }) {
+			for (int rating = 1; rating <= 5; rating++) {
+				assertEquals(WHEELCHAIR.getFactor(categoryId, rating), model.getCost(categoryId, rating));
+			}
+		}
+
+		// Unknown category, no obstacle and invalid rating have no cost
+		assertEquals(0, model.getCost(3, 5));
+		assertEquals(0, model.getCost(1, 0));
+		assertEquals(0, model.getCost(1, 6));
+		assertEquals(0, model.getCost(1, -1));
+	}
+
+	@Test
+	public void maxCombineTakesLargestFactor() {
+		CostModel model = CostModel.compile(Arrays.asList(WHEELCHAIR, BLIND), CostModel.COMBINE_MAX);
+
+		assertEquals(5, model.getCost(1, 5));
+		assertEquals(10, model.getCost(2, 1));
+		assertEquals(50, model.getCost(2, 5));
+		assertEquals(7, model.getCost(3, 1));
+	}
+
+	@Test
+	public void sumCombineAddsFactors() {
+		CostModel model = CostModel.compile(Arrays.asList(WHEELCHAIR, BLIND), CostModel.COMBINE_SUM);
+
+		assertEquals(1, model.getCost(1, 1));
+		assertEquals(10 + 5, model.getCost(2, 1));
+		assertEquals(50 + 5, model.getCost(2, 5));
+		assertEquals(7, model.getCost(3, 3));
+	}
+
+	@Test
+	public void firstOccurrenceOfCategoryIsUsed() {
+		Disability duplicate = new Disability("duplicate", new int[] { 1, 1 },
+				new int[] { 1, 1, 1, 1, 1, 9, 9, 9, 9, 9 });
+		CostModel model = CostModel.compile(Collections.singletonList(duplicate), CostModel.COMBINE_SUM);
+
+		assertEquals(1, model.getCost(1, 3));
+	}
+
+	@Test
+	public void sparseCategoryIdsAreIndexedByMap() {
+		Disability sparse = new Disability("sparse", new int[] { -5, 1000000 },
+				new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+		CostModel model = CostModel.compile(Collections.singletonList(sparse), CostModel.COMBINE_MAX);
+
+		assertEquals(3, model.getCost(-5, 3));
+		assertEquals(8, model.getCost(1000000, 3));
+		assertEquals(0, model.getCost(500000, 3));
+	}
+
+	@Test
+	public void batchCostsMatchSingleCosts() {
+		CostModel model = CostModel.compile(Arrays.asList(WHEELCHAIR, BLIND), CostModel.COMBINE_SUM);
+		int[] categoryIds = { 1, 2, 3, 4, 2 };
+		int[] ratings = { 1, 5, 3, 2, 0 };
+		int[] costs = new int[categoryIds.length];
+
+		model.getCosts(categoryIds, ratings, costs);
+
+		int[] expected = new int[categoryIds.length];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = model.getCost(categoryIds[i], ratings[i]);
+		}
+		assertArrayEquals(expected, costs);
+		assertArrayEquals(new int[] { 1, 55, 7, 0, 0 }, costs);
+	}
+
+	@Test
+	public void totalCostSumsSnapshotRows() {
+		PointsSnapshot.Builder builder = new PointsSnapshot.Builder(3);
+		builder.add("a", 0, 0, 1, 5);
+		builder.add("b", 0, 0, 2, 5);
+		builder.add("c", 0, 0, 4, 5);
+		PointsSnapshot snapshot = builder.build();
+
+		CostModel model = CostModel.compile(Collections.singletonList(WHEELCHAIR), CostModel.COMBINE_MAX);
+		assertEquals(5 + 50, model.getTotalCost(snapshot, new int[] { 0, 1, 2 }));
+		assertEquals(50, model.getTotalCost(snapshot, new int[] { 1 }));
+	}
+}
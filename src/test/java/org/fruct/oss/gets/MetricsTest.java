@@ -0,0 +1,74 @@
+package org.fruct.oss.gets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+	@Test
+	public void emptyHistogramReportsZeros() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getPercentile(0.5));
+	}
+
+	@Test
+	public void percentileIsUpperBoundOfPowerOfTwoBucket() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+
+		// 50th value is in bucket [32, 64)
+		assertEquals(63, histogram.getPercentile(0.5));
+		// 90th value is in bucket [64, 128), limited by maximum
+		assertEquals(100, histogram.getPercentile(0.9));
+		assertEquals(1, histogram.getPercentile(0.01));
+		assertEquals(1, histogram.getPercentile(0));
+		assertEquals(100, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void percentileIsWithinFactorOfTwo() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+		for (int i = 0; i < 1000; i++) {
+			histogram.record(i * 37 % 5000);
+		}
+
+		long exact = 2500;
+		long percentile = histogram.getPercentile(0.5);
+		assertTrue(percentile >= exact / 2 && percentile <= exact * 2);
+	}
+
+	@Test
+	public void zeroAndNegativeValuesAreInFirstBucket() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+		histogram.record(0);
+		histogram.record(-5);
+		histogram.record(8);
+
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getPercentile(0.5));
+		assertEquals(8, histogram.getPercentile(1));
+		assertEquals(8, histogram.getSum());
+	}
+
+	@Test
+	public void largestValueFitsLastBucket() {
+		Metrics.Histogram histogram = new Metrics.Histogram();
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(0.5));
+	}
+}
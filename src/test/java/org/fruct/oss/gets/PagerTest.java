@@ -0,0 +1,127 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.Function;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PagerTest {
+	// Keys of rows, page n holds keys 10 * n + 1 .. 10 * n + 2
+	private static final int PAGE_SIZE = 2;
+	private static final int PAGES = 3;
+
+	private final List<Long> queriedKeys = new ArrayList<>();
+	private final List<Function<Page<Long>>> pendingQueries = new ArrayList<>();
+	private final List<Page<Long>> delivered = new ArrayList<>();
+
+	private Pager<Long> pager;
+
+	@Before
+	public void setUp() {
+		pager = new Pager<Long>(null, null, PAGE_SIZE) {
+			@Override
+			void queryPage(long afterKey, Function<Page<Long>> callback) {
+				queriedKeys.add(afterKey);
+				pendingQueries.add(callback);
+			}
+		};
+	}
+
+	@Test
+	public void nextPageIsPrefetchedAfterDelivery() {
+		pager.loadNextPage(collector());
+		assertEquals(Arrays.asList(Long.MIN_VALUE), queriedKeys);
+
+		completeQuery();
+		assertEquals(1, delivered.size());
+		assertEquals(Arrays.asList(1L, 2L), delivered.get(0).getItems());
+
+		// Second page is requested before user asks for it
+		assertEquals(Arrays.asList(Long.MIN_VALUE, 2L), queriedKeys);
+		completeQuery();
+		assertEquals(1, delivered.size());
+
+		// Prefetched page is delivered immediately
+		pager.loadNextPage(collector());
+		assertEquals(2, delivered.size());
+		assertEquals(Arrays.asList(11L, 12L), delivered.get(1).getItems());
+		assertEquals(Arrays.asList(Long.MIN_VALUE, 2L, 12L), queriedKeys);
+	}
+
+	@Test
+	public void loadingStopsAfterLastPage() {
+		for (int i = 0; i < PAGES; i++) {
+			assertTrue(pager.hasNextPage());
+			pager.loadNextPage(collector());
+			completeQuery();
+		}
+
+		assertEquals(PAGES, delivered.size());
+		assertTrue(delivered.get(PAGES - 1).isLast());
+		assertFalse(pager.hasNextPage());
+		assertEquals(PAGES, queriedKeys.size());
+		assertTrue(pendingQueries.isEmpty());
+	}
+
+	@Test
+	public void concurrentLoadIsRejected() {
+		pager.loadNextPage(collector());
+
+		try {
+			pager.loadNextPage(collector());
+			fail("Second page requested before first delivered");
+		} catch (IllegalStateException ignored) {
+		}
+	}
+
+	@Test
+	public void closedPagerDropsLoadingPage() {
+		pager.loadNextPage(collector());
+		pager.close();
+		completeQuery();
+
+		assertTrue(delivered.isEmpty());
+		assertEquals(1, queriedKeys.size());
+	}
+
+	@Test
+	public void pageSizeMustBePositive() {
+		try {
+			new Pager<Long>(null, null, 0);
+			fail("Pager created with zero page size");
+		} catch (IllegalArgumentException ignored) {
+		}
+	}
+
+	private Function<Page<Long>> collector() {
+		return new Function<Page<Long>>() {
+			@Override
+			public void call(Page<Long> page) {
+				delivered.add(page);
+			}
+		};
+	}
+
+	/**
+	 * Deliver page for oldest query, as main thread does after background query finishes
+	 */
+	private void completeQuery() {
+		Function<Page<Long>> callback = pendingQueries.remove(0);
+		long afterKey = queriedKeys.get(queriedKeys.size() - pendingQueries.size() - 1);
+		int page = afterKey == Long.MIN_VALUE ? 0 : (int) (afterKey / 10) + 1;
+
+		List<Long> items = new ArrayList<>();
+		for (int i = 1; i <= PAGE_SIZE; i++) {
+			items.add(page * 10L + i);
+		}
+		callback.call(new Page<>(items, items.get(items.size() - 1), page == PAGES - 1));
+	}
+}
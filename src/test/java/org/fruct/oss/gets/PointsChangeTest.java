@@ -0,0 +1,89 @@
+package org.fruct.oss.gets;
+
+import org.junit.Test;
+import org.osmdroid.util.BoundingBox;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PointsChangeTest {
+	@Test
+	public void newChangeIsEmpty() {
+		PointsChange change = new PointsChange();
+
+		assertTrue(change.isEmpty());
+		assertFalse(change.isFull());
+		assertNull(change.getBoundingBox());
+		assertFalse(change.containsCategory(1));
+	}
+
+	@Test
+	public void mergeCombinesPointsAndBoundingBox() {
+		PointsChange change = new PointsChange();
+		change.addPoint("a", 1, 61000000, 34000000);
+
+		PointsChange other = new PointsChange();
+		other.addPoint("b", 2, 62000000, 33000000);
+		other.addPoint("a", 1, 61500000, 35000000);
+
+		change.merge(other);
+
+		assertFalse(change.isEmpty());
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), change.getUuids());
+		assertTrue(change.containsCategory(1));
+		assertTrue(change.containsCategory(2));
+		assertFalse(change.containsCategory(3));
+
+		// Point categories are not reported as whole changed categories
+		assertEquals(0, change.getCategoryIds().length);
+
+		BoundingBox box = change.getBoundingBox();
+		assertEquals(62.0, box.getLatNorth(), 1e-9);
+		assertEquals(61.0, box.getLatSouth(), 1e-9);
+		assertEquals(35.0, box.getLonEast(), 1e-9);
+		assertEquals(33.0, box.getLonWest(), 1e-9);
+	}
+
+	@Test
+	public void mergeOfCategoryChangeKeepsBoundingBoxOfPoints() {
+		PointsChange change = new PointsChange();
+		change.addPoint("a", 1, 61000000, 34000000);
+		change.merge(PointsChange.category(5));
+
+		assertArrayEquals(new int[] { 5 }, change.getCategoryIds());
+		assertTrue(change.containsCategory(5));
+		assertEquals(61.0, change.getBoundingBox().getLatNorth(), 1e-9);
+		assertEquals(61.0, change.getBoundingBox().getLatSouth(), 1e-9);
+	}
+
+	@Test
+	public void fullChangeContainsEverything() {
+		PointsChange change = PointsChange.category(5);
+		change.merge(PointsChange.full());
+
+		assertTrue(change.isFull());
+		assertFalse(change.isEmpty());
+		assertTrue(change.containsCategory(42));
+	}
+
+	@Test
+	public void remoteFlagIsMerged() {
+		PointsChange remote = new PointsChange();
+		remote.setRemoteUpdate(true);
+
+		PointsChange change = new PointsChange();
+		assertFalse(change.isRemoteUpdate());
+		change.merge(remote);
+		assertTrue(change.isRemoteUpdate());
+
+		// Merge never clears flags
+		change.merge(new PointsChange());
+		assertTrue(change.isRemoteUpdate());
+	}
+}
@@ -0,0 +1,67 @@
+package org.fruct.oss.gets;
+
+import android.database.Cursor;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PointsRequestTest {
+	@Test
+	public void rowsOfCategoryShareInstance() {
+		PointsRequest request = new PointsRequest() {
+			@Override
+			public Cursor doQuery() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		Point first = request.cursorToObject(createCursor("a", 1, "first"));
+		Point second = request.cursorToObject(createCursor("b", 1, "first"));
+		Point other = request.cursorToObject(createCursor("c", 2, "other"));
+
+		assertEquals("a", first.getUuid());
+		assertEquals("b", second.getUuid());
+		assertSame(first.getCategory(), second.getCategory());
+		assertNotSame(first.getCategory(), other.getCategory());
+		assertEquals(1, first.getCategory().getId());
+		assertEquals("first", first.getCategory().getName());
+		assertEquals(2, other.getCategory().getId());
+	}
+
+	/**
+	 * Row of point joined with category in column order of PointsDatabase point queries
+	 */
+	private static Cursor createCursor(String uuid, int categoryId, String categoryName) {
+		final Object[] row = {
+				// point._id, point columns from name to localName
+				1L, "name", "description", "url", 61000000, 34000000, "provider", uuid, 3, 0, "name",
+				// category columns from _id to localName
+				categoryId, categoryName, "description", "url", "iconUrl", 1, 1, categoryName
+		};
+
+		return (Cursor) Proxy.newProxyInstance(Cursor.class.getClassLoader(), new Class<?>[] { Cursor.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						Object value = row[(Integer) args[0]];
+						switch (method.getName()) {
+						case "getInt":
+							return ((Number) value).intValue();
+						case "getLong":
+							return ((Number) value).longValue();
+						case "getString":
+							return value;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					}
+				});
+	}
+}
@@ -0,0 +1,202 @@
+package org.fruct.oss.gets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PointsSnapshotTest {
+	// Offset of uuid offsets column of three rows
+	private static final int OFFSETS_POSITION = 16 + 3 * 4 * 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void builderSkipsDuplicateUuids() {
+		PointsSnapshot.Builder builder = new PointsSnapshot.Builder(2);
+
+		assertTrue(builder.add("a", 1, 2, 3, 4));
+		assertFalse(builder.add("a", 5, 6, 7, 8));
+
+		PointsSnapshot snapshot = builder.build();
+		assertEquals(1, snapshot.size());
+		assertEquals(1, snapshot.getLatE6(0));
+		assertEquals(4, snapshot.getRating(0));
+	}
+
+	@Test
+	public void writtenSnapshotMapsBack() throws IOException {
+		PointsSnapshot snapshot = createSnapshot();
+		File file = folder.newFile("points.snapshot");
+		snapshot.write(file);
+
+		PointsSnapshot mapped = PointsSnapshot.map(file);
+
+		assertEquals(snapshot.size(), mapped.size());
+		for (int i = 0; i < snapshot.size(); i++) {
+			assertEquals(snapshot.getLatE6(i), mapped.getLatE6(i));
+			assertEquals(snapshot.getLonE6(i), mapped.getLonE6(i));
+			assertEquals(snapshot.getCategoryId(i), mapped.getCategoryId(i));
+			assertEquals(snapshot.getRating(i), mapped.getRating(i));
+			assertEquals(snapshot.getUuid(i), mapped.getUuid(i));
+		}
+
+		assertEquals(1, mapped.indexOf("точка-b"));
+		assertEquals(-1, mapped.indexOf("missing"));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void emptySnapshotMapsBack() throws IOException {
+		File file = folder.newFile("points.snapshot");
+		new PointsSnapshot.Builder(0).build().write(file);
+
+		assertEquals(0, PointsSnapshot.map(file).size());
+	}
+
+	@Test
+	public void writeReplacesMappedFile() throws IOException {
+		File file = folder.newFile("points.snapshot");
+		createSnapshot().write(file);
+		PointsSnapshot mapped = PointsSnapshot.map(file);
+
+		new PointsSnapshot.Builder(0).build().write(file);
+
+		// Previous mapping is still readable
+		assertEquals("c", mapped.getUuid(2));
+		assertEquals(0, PointsSnapshot.map(file).size());
+	}
+
+	@Test
+	public void queriesSelectRowsInBox() {
+		PointsSnapshot snapshot = createSnapshot();
+
+		final List<String> visited = new ArrayList<>();
+		snapshot.scan(61000000, 34000000, 61500000, 34500000, new PointsSnapshot.Visitor() {
+			@Override
+			public void visit(PointsSnapshot snapshot, int index) {
+				visited.add(snapshot.getUuid(index));
+			}
+		});
+
+		assertEquals(2, visited.size());
+		assertTrue(visited.contains("a"));
+		assertTrue(visited.contains("точка-b"));
+		assertEquals(2, snapshot.countInBox(61000000, 34000000, 61500000, 34500000));
+
+		PointsSnapshot.Filter category2 = new PointsSnapshot.Filter() {
+			@Override
+			public boolean accept(PointsSnapshot snapshot, int index) {
+				return snapshot.getCategoryId(index) == 2;
+			}
+		};
+		assertArrayEquals(new int[] { 1, 2 }, snapshot.filter(category2));
+		assertEquals(2, snapshot.count(category2));
+	}
+
+	@Test
+	public void badMagicIsRejected() throws IOException {
+		File file = writeSnapshot();
+		patchInt(file, 0, 0x12345678);
+
+		assertRejected(file);
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException {
+		File file = writeSnapshot();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(randomAccessFile.length() - 1);
+		} finally {
+			randomAccessFile.close();
+		}
+
+		assertRejected(file);
+	}
+
+	@Test
+	public void shortHeaderIsRejected() throws IOException {
+		File file = writeSnapshot();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(8);
+		} finally {
+			randomAccessFile.close();
+		}
+
+		assertRejected(file);
+	}
+
+	@Test
+	public void wrongSizeIsRejected() throws IOException {
+		File file = writeSnapshot();
+		patchInt(file, 8, 4);
+
+		assertRejected(file);
+	}
+
+	@Test
+	public void decreasingUuidOffsetsAreRejected() throws IOException {
+		File file = writeSnapshot();
+		patchInt(file, OFFSETS_POSITION + 4, 100);
+
+		assertRejected(file);
+	}
+
+	@Test
+	public void uuidOffsetsOutsideHeapAreRejected() throws IOException {
+		File file = writeSnapshot();
+		patchInt(file, OFFSETS_POSITION + 3 * 4, 1);
+
+		assertRejected(file);
+	}
+
+	private static PointsSnapshot createSnapshot() {
+		PointsSnapshot.Builder builder = new PointsSnapshot.Builder(3);
+		builder.add("a", 61100000, 34100000, 1, 0);
+		builder.add("точка-b", 61400000, 34400000, 2, 5);
+		builder.add("c", 62000000, 35000000, 2, 3);
+		return builder.build();
+	}
+
+	private File writeSnapshot() throws IOException {
+		File file = folder.newFile("points.snapshot");
+		createSnapshot().write(file);
+		return file;
+	}
+
+	private static void patchInt(File file, int position, int value) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(value);
+			randomAccessFile.seek(position);
+			randomAccessFile.write(buffer.array());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static void assertRejected(File file) {
+		try {
+			PointsSnapshot.map(file);
+			fail("Corrupt snapshot mapped");
+		} catch (IOException ignored) {
+		}
+	}
+}
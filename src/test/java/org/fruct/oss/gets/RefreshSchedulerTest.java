@@ -0,0 +1,295 @@
+package org.fruct.oss.gets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RefreshSchedulerTest {
+	private static final long REFRESH_INTERVAL = 60 * 60 * 1000;
+	private static final int REFRESH_DISTANCE = 1000;
+
+	// Wall clock differs from elapsed realtime
+	private static final long WALL_CLOCK_OFFSET = 1500000000000L;
+
+	private static final double LAT = 61.78;
+	private static final double LON = 34.35;
+	// About 5 km north
+	private static final double FAR_LAT = 61.825;
+
+	private long now;
+	private final List<Task> tasks = new ArrayList<>();
+
+	private boolean isNetworkAvailable = true;
+	private final List<double[]> started = new ArrayList<>();
+	private int cancelled;
+
+	private RefreshScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		now = 10000;
+		scheduler = new RefreshScheduler(null, new RefreshScheduler.Callback() {
+			@Override
+			public boolean isNetworkAvailable() {
+				return isNetworkAvailable;
+			}
+
+			@Override
+			public void startRefresh(double lat, double lon) {
+				started.add(new double[] { lat, lon });
+			}
+
+			@Override
+			public void cancelRefresh() {
+				cancelled++;
+			}
+		}, REFRESH_INTERVAL, REFRESH_DISTANCE) {
+			@Override
+			long elapsedRealtime() {
+				return now;
+			}
+
+			@Override
+			long currentTimeMillis() {
+				return now + WALL_CLOCK_OFFSET;
+			}
+
+			@Override
+			void postDelayed(Runnable runnable, long delay) {
+				tasks.add(new Task(now + delay, runnable));
+			}
+
+			@Override
+			void removeCallbacks(Runnable runnable) {
+				for (int i = tasks.size() - 1; i >= 0; i--) {
+					if (tasks.get(i).runnable == runnable) {
+						tasks.remove(i);
+					}
+				}
+			}
+		};
+	}
+
+	@Test
+	public void firstLocationStartsRefreshImmediately() {
+		scheduler.onLocation(LAT, LON);
+		advance(0);
+
+		assertStarted(LAT, LON);
+	}
+
+	@Test
+	public void burstOfFixesCausesSingleCheckAtLastLocation() {
+		startFirstRefresh();
+		advance(REFRESH_INTERVAL);
+
+		for (int i = 0; i < 10; i++) {
+			scheduler.onLocation(LAT + i * 0.001, LON);
+			advance(100);
+		}
+		assertEquals(1, tasks.size());
+
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+		assertEquals(2, started.size());
+		assertEquals(LAT + 9 * 0.001, started.get(1)[0], 1e-9);
+	}
+
+	@Test
+	public void nearbyLocationDoesNotRefresh() {
+		startFirstRefresh();
+		advance(RefreshScheduler.MIN_REFRESH_INTERVAL * 2);
+
+		scheduler.onLocation(LAT + 0.001, LON);
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+
+		assertEquals(1, started.size());
+	}
+
+	@Test
+	public void outdatedRefreshIsRepeatedAtSameLocation() {
+		startFirstRefresh();
+		advance(REFRESH_INTERVAL + 1);
+
+		scheduler.onLocation(LAT, LON);
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+
+		assertEquals(2, started.size());
+	}
+
+	@Test
+	public void persistedRefreshIsRespected() {
+		scheduler.setLastRefresh(now + WALL_CLOCK_OFFSET - 1000, LAT, LON);
+		scheduler.onLocation(LAT, LON);
+		advance(0);
+
+		assertEquals(0, started.size());
+	}
+
+	@Test
+	public void movedLocationIsThrottledByMinInterval() {
+		startFirstRefresh();
+		advance(1000);
+
+		scheduler.onLocation(FAR_LAT, LON);
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+		assertEquals(1, started.size());
+
+		// Check is postponed until interval since previous start passes
+		advance(RefreshScheduler.MIN_REFRESH_INTERVAL - 1000 - RefreshScheduler.LOCATION_DEBOUNCE - 1);
+		assertEquals(1, started.size());
+		advance(1);
+		assertStarted(FAR_LAT, LON);
+	}
+
+	@Test
+	public void runningRefreshIsNotCancelledByNewLocation() {
+		startRefreshRunning();
+		advance(RefreshScheduler.MIN_REFRESH_INTERVAL);
+		scheduler.onRefreshProgress();
+
+		scheduler.onLocation(FAR_LAT, LON);
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+		assertEquals(1, started.size());
+		assertEquals(0, cancelled);
+
+		// Superseding refresh starts after current one
+		scheduler.onRefreshFinished();
+		assertStarted(FAR_LAT, LON);
+		assertEquals(0, cancelled);
+	}
+
+	@Test
+	public void stalledRefreshIsCancelled() {
+		startRefreshRunning();
+		advance(RefreshScheduler.MIN_REFRESH_INTERVAL);
+		scheduler.onRefreshProgress();
+
+		scheduler.onLocation(FAR_LAT, LON);
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+		assertEquals(0, cancelled);
+
+		// No progress after superseding check
+		advance(RefreshScheduler.STALL_TIMEOUT);
+		assertEquals(1, cancelled);
+		assertStarted(FAR_LAT, LON);
+	}
+
+	@Test
+	public void progressingRefreshIsNotCancelled() {
+		startRefreshRunning();
+		advance(RefreshScheduler.MIN_REFRESH_INTERVAL);
+
+		scheduler.onLocation(FAR_LAT, LON);
+		for (int i = 0; i < 10; i++) {
+			scheduler.onRefreshProgress();
+			advance(RefreshScheduler.STALL_TIMEOUT / 2);
+		}
+
+		assertEquals(0, cancelled);
+		assertEquals(1, started.size());
+	}
+
+	@Test
+	public void forcedRefreshIgnoresThrottle() {
+		startFirstRefresh();
+		advance(1000);
+
+		scheduler.requestRefresh();
+		assertEquals(2, started.size());
+	}
+
+	@Test
+	public void refreshWaitsForNetwork() {
+		isNetworkAvailable = false;
+		scheduler.onLocation(LAT, LON);
+		advance(0);
+		assertEquals(0, started.size());
+
+		isNetworkAvailable = true;
+		scheduler.requestCheck();
+		assertStarted(LAT, LON);
+	}
+
+	@Test
+	public void resumedRefreshUsesOldCenterWithoutLocation() {
+		scheduler.resumeRefresh(FAR_LAT, LON);
+
+		assertStarted(FAR_LAT, LON);
+	}
+
+	@Test
+	public void resumedRefreshUsesKnownLocation() {
+		isNetworkAvailable = false;
+		scheduler.onLocation(LAT, LON);
+		advance(0);
+
+		isNetworkAvailable = true;
+		scheduler.resumeRefresh(FAR_LAT, LON);
+		assertStarted(LAT, LON);
+	}
+
+	@Test
+	public void stopRemovesScheduledCheck() {
+		startFirstRefresh();
+		advance(REFRESH_INTERVAL);
+		scheduler.onLocation(FAR_LAT, LON);
+
+		scheduler.stop();
+		advance(RefreshScheduler.LOCATION_DEBOUNCE);
+		assertEquals(1, started.size());
+	}
+
+	private void startFirstRefresh() {
+		startRefreshRunning();
+		scheduler.onRefreshFinished();
+	}
+
+	private void startRefreshRunning() {
+		scheduler.onLocation(LAT, LON);
+		advance(0);
+		assertEquals(1, started.size());
+	}
+
+	private void assertStarted(double lat, double lon) {
+		double[] last = started.get(started.size() - 1);
+		assertEquals(lat, last[0], 1e-9);
+		assertEquals(lon, last[1], 1e-9);
+	}
+
+	/**
+	 * Run posted tasks in order of time until clock advanced by given delay
+	 */
+	private void advance(long delay) {
+		long target = now + delay;
+		while (true) {
+			Task next = null;
+			for (Task task : tasks) {
+				if (task.time <= target && (next == null || task.time < next.time)) {
+					next = task;
+				}
+			}
+			if (next == null) {
+				break;
+			}
+
+			tasks.remove(next);
+			now = next.time;
+			next.runnable.run();
+		}
+		now = target;
+	}
+
+	private static class Task {
+		final long time;
+		final Runnable runnable;
+
+		Task(long time, Runnable runnable) {
+			this.time = time;
+			this.runnable = runnable;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.fruct.oss.gets;
+
+import org.fruct.oss.gets.utils.SpatialGrid;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TileCoverageTest {
+	private static final int CELL = SpatialGrid.COVERAGE_CELL_E6;
+
+	private final Category category = new Category("category", "", "", "", 1, true);
+
+	@Test
+	public void tilesAroundCoverCircle() {
+		GeoPoint center = new GeoPoint(61.78, 34.35);
+		int radius = 5000;
+		int[] tiles = TileCoverage.tilesAround(center, radius);
+
+		double dLat = radius / SpatialGrid.METERS_PER_DEGREE;
+		double dLon = radius / (SpatialGrid.METERS_PER_DEGREE * SpatialGrid.lonScale(center.getLatitude()));
+		int[] corners = {
+				tileOf(center.getLatitude() - dLat, center.getLongitude() - dLon),
+				tileOf(center.getLatitude() - dLat, center.getLongitude() + dLon),
+				tileOf(center.getLatitude() + dLat, center.getLongitude() - dLon),
+				tileOf(center.getLatitude() + dLat, center.getLongitude() + dLon),
+				tileOf(center.getLatitude(), center.getLongitude())
+		};
+		for (int corner : corners) {
+			assertTrue(contains(tiles, corner));
+		}
+
+		// Tiles form rectangle without duplicates
+		int rows = SpatialGrid.tileLatIndex(corners[2]) - SpatialGrid.tileLatIndex(corners[0]) + 1;
+		int columns = SpatialGrid.tileLonIndex(corners[1]) - SpatialGrid.tileLonIndex(corners[0]) + 1;
+		assertEquals(rows * columns, tiles.length);
+	}
+
+	@Test
+	public void smallCircleInsideTileNeedsOneTile() {
+		int[] tiles = TileCoverage.tilesAround(new GeoPoint(61.01, 34.01), 10);
+		assertArrayEquals(new int[] { tileOf(61.01, 34.01) }, tiles);
+	}
+
+	@Test
+	public void plannedCircleContainsAllTileCorners() {
+		int[] tiles = TileCoverage.tilesAround(new GeoPoint(61.78, 34.35), 3000);
+		CategoryFetch fetch = TileCoverage.planFetch(category, tiles);
+
+		assertEquals(category, fetch.getCategory());
+		assertArrayEquals(tiles, fetch.getTiles());
+		assertCornersInside(fetch, tiles);
+	}
+
+	@Test
+	public void plannedCircleCoversSubsetOfTiles() {
+		int[] tiles = TileCoverage.tilesAround(new GeoPoint(61.78, 34.35), 3000);
+		int[] stale = { tiles[0], tiles[tiles.length - 1] };
+		CategoryFetch fetch = TileCoverage.planFetch(category, stale);
+
+		// Circle spans bounding box of stale tiles, not whole area
+		CategoryFetch full = TileCoverage.planFetch(category, tiles);
+		assertTrue(fetch.getRadius() <= full.getRadius());
+		assertCornersInside(fetch, stale);
+	}
+
+	@Test
+	public void plannedCircleAcrossEquatorUsesWidestEdge() {
+		int[] tiles = TileCoverage.tilesAround(new GeoPoint(0, 30), 5000);
+		CategoryFetch fetch = TileCoverage.planFetch(category, tiles);
+
+		assertEquals(0, fetch.getCenter().getLatitude(), 0.02);
+		assertCornersInside(fetch, tiles);
+	}
+
+	private static void assertCornersInside(CategoryFetch fetch, int[] tiles) {
+		int centerLatE6 = (int) (fetch.getCenter().getLatitude() * 1e6);
+		int centerLonE6 = (int) (fetch.getCenter().getLongitude() * 1e6);
+
+		for (int tile : tiles) {
+			int minLatE6 = SpatialGrid.cellMinLatE6(SpatialGrid.tileLatIndex(tile), CELL);
+			int minLonE6 = SpatialGrid.cellMinLonE6(SpatialGrid.tileLonIndex(tile), CELL);
+			for (int latE6 : new int[] { minLatE6, minLatE6 + CELL }) {
+				for (int lonE6 : new int[] { minLonE6, minLonE6 + CELL }) {
+					// Distance in metres along both axes at latitude of corner
+					double dy = (latE6 - centerLatE6) / 1e6 * SpatialGrid.METERS_PER_DEGREE;
+					double dx = (lonE6 - centerLonE6) / 1e6 * SpatialGrid.METERS_PER_DEGREE
+							* Math.cos(Math.toRadians(latE6 / 1e6));
+					assertTrue("Corner " + latE6 + "," + lonE6 + " outside of " + fetch.getRadius(),
+							Math.sqrt(dx * dx + dy * dy) <= fetch.getRadius());
+				}
+			}
+		}
+	}
+
+	private static int tileOf(double lat, double lon) {
+		return SpatialGrid.tileOf((int) (lat * 1e6), (int) (lon * 1e6), CELL);
+	}
+
+	private static boolean contains(int[] values, int value) {
+		for (int v : values) {
+			if (v == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+}